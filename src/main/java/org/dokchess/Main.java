@@ -17,6 +17,8 @@
  */
 package org.dokchess;
 
+import org.dokchess.domain.Move;
+import org.dokchess.domain.Position;
 import org.dokchess.engine.DefaultEngine;
 import org.dokchess.engine.Engine;
 import org.dokchess.opening.OpeningLibrary;
@@ -24,21 +26,31 @@ import org.dokchess.opening.polyglot.PolyglotOpeningBook;
 import org.dokchess.opening.polyglot.SelectionMode;
 import org.dokchess.rules.ChessRules;
 import org.dokchess.rules.DefaultChessRules;
+import org.dokchess.rules.Perft;
 import org.dokchess.textui.xboard.XBoard;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Command-line entry point for DokChess. Wires stdin/stdout for the XBoard protocol
- * and loads an opening book when a path is given.
+ * and loads an opening book when a path is given. The subcommands {@code perft},
+ * {@code pperft} and {@code divide} test the move generator instead.
  *
  * @author StefanZ
  */
 public final class Main {
 
+    /**
+     * Size of the hash table for the parallel perft, in megabytes.
+     */
+    private static final int PERFT_HASH_SIZE = 64;
+
     /**
      * Private constructor so this class cannot be instantiated.
      */
@@ -48,10 +60,15 @@ public final class Main {
     /**
      * Starts the XBoard protocol (stdin/stdout) and the engine.
      *
-     * @param args optional command-line argument: path to a polyglot opening book file
+     * @param args optional command-line argument: path to a polyglot opening book file,
+     *             or a perft subcommand, see {@link #perft(String[], PrintStream)}
      */
     public static void main(String[] args) {
 
+        if (args.length > 0 && (args[0].equals("perft") || args[0].equals("divide") || args[0].equals("pperft"))) {
+            System.exit(perft(args, System.out));
+        }
+
         OpeningLibrary openingLibrary = null;
 
         if (args.length > 0) {
@@ -83,6 +100,74 @@ public final class Main {
         xBoard.play();
     }
 
+    /**
+     * Runs the move generator test. Usage:
+     * <pre>
+     * perft suite [max depth]    reference positions with known node counts
+     * perft depth [FEN]          leaf nodes of a position (default: starting position)
+     * pperft depth [FEN]         the same sequentially and in parallel, with a hash table, and the speedup
+     * divide depth [FEN]         leaf nodes per move of a position
+     * </pre>
+     *
+     * @param args command-line arguments, starting with the subcommand
+     * @param out  stream for the results
+     * @return exit code, 0 if successful
+     */
+    static int perft(String[] args, PrintStream out) {
+        Perft perft = new Perft(new DefaultChessRules(), args[0].equals("pperft") ? PERFT_HASH_SIZE : 0);
+        try {
+            if (args.length > 1 && args[1].equals("suite")) {
+                int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+                if (maxDepth < 1) {
+                    out.printf("Invalid depth %d, the depth must be at least 1.%n", maxDepth);
+                    return 2;
+                }
+                return perft.runReferencePositions(maxDepth, out) ? 0 : 1;
+            }
+
+            int depth = Integer.parseInt(args[1]);
+            if (depth < 1) {
+                out.printf("Invalid depth %d, the depth must be at least 1.%n", depth);
+                return 2;
+            }
+            Position position = new Position();
+            if (args.length > 2) {
+                StringBuilder fen = new StringBuilder(args[2]);
+                for (int i = 3; i < args.length; ++i) {
+                    fen.append(' ').append(args[i]);
+                }
+                position = new Position(fen.toString());
+            }
+
+            if (args[0].equals("pperft")) {
+                return perft.compareWithParallel(position, depth, new ForkJoinPool(), out) ? 0 : 1;
+            }
+
+            long start = System.currentTimeMillis();
+            long nodes = 0;
+            if (args[0].equals("divide")) {
+                for (Map.Entry<Move, Long> entry : perft.divide(position, depth).entrySet()) {
+                    // coordinate notation like other engines, e.g. e7e8q
+                    Move move = entry.getKey();
+                    String promotion = move.isPromotion()
+                            ? String.valueOf(Character.toLowerCase(move.getPromotion().getLetter())) : "";
+                    out.printf("%s%s%s %d%n", move.getFrom(), move.getTo(), promotion, entry.getValue());
+                    nodes += entry.getValue();
+                }
+            } else {
+                nodes = perft.perft(position, depth);
+            }
+            long millis = System.currentTimeMillis() - start;
+            out.printf("%d nodes in %d ms (%d nodes/s)%n", nodes, millis, nodes * 1000 / Math.max(millis, 1));
+            return 0;
+
+        } catch (RuntimeException e) {
+            out.println("Usage: perft suite [max depth] | perft <depth> [FEN] | pperft <depth> [FEN]"
+                    + " | divide <depth> [FEN]");
+            return 2;
+        }
+    }
+
     static XBoard buildXBoard() {
         XBoard xBoard = new XBoard();
 
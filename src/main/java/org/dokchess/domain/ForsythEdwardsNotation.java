@@ -69,7 +69,7 @@ final class ForsythEdwardsNotation {
                 PieceType pieceType = PieceType.fromLetter(piece);
                 Colour side = Character.isUpperCase(piece) ? Colour.WHITE
                         : Colour.BLACK;
-                Piece p = new Piece(pieceType, side);
+                Piece p = Piece.of(pieceType, side);
                 pos.setPiece(rank, file, p);
                 file++;
             }
@@ -104,9 +104,20 @@ final class ForsythEdwardsNotation {
         if (enPassant.equals("-")) {
             pos.setEnPassantSquare(null);
         } else {
-            Square enPassantFeld = new Square(enPassant);
+            Square enPassantFeld = Square.of(enPassant);
             pos.setEnPassantSquare(enPassantFeld);
         }
+
+        // halfmove clock and fullmove number are optional
+        if (groups.length > 5) {
+            pos.setHalfmoveClock(Integer.parseInt(groups[4]));
+            pos.setFullmoveNumber(Integer.parseInt(groups[5]));
+        } else {
+            pos.setHalfmoveClock(0);
+            pos.setFullmoveNumber(1);
+        }
+
+        pos.recalculateHashKey();
     }
 
     /**
@@ -174,9 +185,10 @@ final class ForsythEdwardsNotation {
             sb.append(position.getEnPassantSquare());
         }
 
-        // TODO: missing implementation here
-
-        sb.append(" 0 1");
+        sb.append(" ");
+        sb.append(position.getHalfmoveClock());
+        sb.append(" ");
+        sb.append(position.getFullmoveNumber());
 
         return sb.toString();
     }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * List of packed moves (see {@link PackedMove}), backed by an int array. The search keeps one list
+ * per ply and clears it before reuse, so move generation does not allocate.
+ *
+ * @author StefanZ
+ */
+public final class MoveList {
+
+    /**
+     * Enough for any legal chess position (the maximum known is 218 moves).
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+
+    private int size;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param capacity initial capacity, the list grows if needed
+     */
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, 2 * moves.length);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Shortens the list, e.g. after illegal moves have been removed by moving the remaining ones
+     * to the front with {@link #set(int, int)}.
+     *
+     * @param newSize new size, not larger than the current one
+     */
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * Converts the moves into move objects.
+     *
+     * @return new list with all moves, in the same order
+     */
+    public List<Move> toMoves() {
+        List<Move> result = new ArrayList<Move>(size);
+        for (int i = 0; i < size; ++i) {
+            result.add(PackedMove.toMove(moves[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.dokchess.domain;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.dokchess.domain.CastlingType.*;
+import static org.dokchess.domain.Colour.WHITE;
+import static org.dokchess.domain.PieceType.*;
+
+/**
+ * Mutable variant of {@link Position} for the search. Moves are applied in place with
+ * {@link #makeMove(int)} and taken back with {@link #unmakeMove()}, so walking through the
+ * search tree does not create a new object per node. Moves are packed into an int, see
+ * {@link PackedMove}.
+ * <p/>
+ * The information needed to take a move back (the move itself, castling rights, en passant
+ * square, hash key) is kept on an undo stack with preallocated arrays. The class is not thread
+ * safe; each search thread uses its own instance and resets it with {@link #setPosition(Position)}.
+ * <p/>
+ * Piece placement is stored as bitboards, see {@link Position}. In addition, the piece on each square
+ * (mailbox) and the square of both kings are maintained, so these lookups do not need a search.
+ *
+ * @author StefanZ
+ */
+public final class MutablePosition {
+
+    private static final int NUMBER_OF_FILES = 8;
+
+    private static final int INITIAL_UNDO_CAPACITY = 128;
+
+    /**
+     * Piece index for an empty square.
+     */
+    public static final int NO_PIECE = -1;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private static final CastlingType[] CASTLING_TYPES = CastlingType.values();
+
+    private static final int ALL_CASTLING_RIGHTS = (1 << CASTLING_TYPES.length) - 1;
+
+    /**
+     * Castling rights which remain after a move from or to a square, indexed by square index. Only the home
+     * squares of kings and rooks remove rights.
+     */
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    /**
+     * All pieces, in the order of the bitboards (see {@link #pieceIndex(PieceType, Colour)}).
+     */
+    private static final Piece[] PIECES = new Piece[Colour.values().length * PIECE_TYPES.length];
+
+    static {
+        for (Colour colour : Colour.values()) {
+            for (PieceType type : PIECE_TYPES) {
+                PIECES[pieceIndex(type, colour)] = Piece.of(type, colour);
+            }
+        }
+
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING_RIGHTS);
+        CASTLING_MASKS[Squares.a1.getIndex()] &= ~castlingBit(WHITE_QUEENSIDE);
+        CASTLING_MASKS[Squares.h1.getIndex()] &= ~castlingBit(WHITE_KINGSIDE);
+        CASTLING_MASKS[Squares.e1.getIndex()] &= ~(castlingBit(WHITE_QUEENSIDE) | castlingBit(WHITE_KINGSIDE));
+        CASTLING_MASKS[Squares.a8.getIndex()] &= ~castlingBit(BLACK_QUEENSIDE);
+        CASTLING_MASKS[Squares.h8.getIndex()] &= ~castlingBit(BLACK_KINGSIDE);
+        CASTLING_MASKS[Squares.e8.getIndex()] &= ~(castlingBit(BLACK_QUEENSIDE) | castlingBit(BLACK_KINGSIDE));
+    }
+
+    private Colour toMove;
+
+    /**
+     * Squares occupied by each kind of piece, indexed by {@link #pieceIndex(PieceType, Colour)}.
+     */
+    private final long[] pieceBitboards = new long[PIECES.length];
+
+    /**
+     * Squares occupied by each side, indexed by {@link Colour#ordinal()}.
+     */
+    private final long[] colourBitboards = new long[Colour.values().length];
+
+    /**
+     * Piece index for each square, {@link #NO_PIECE} for an empty square. Kept in sync with the bitboards.
+     */
+    private final int[] mailbox = new int[64];
+
+    /**
+     * Square index of the king of each side, indexed by {@link Colour#ordinal()}, {@link #NO_PIECE} if missing.
+     */
+    private final int[] kingSquares = new int[Colour.values().length];
+
+    private Square enPassantSquare;
+
+    /**
+     * Available castlings, bit n is set if the castling type with ordinal n is allowed.
+     */
+    private int castlingRights;
+
+    private long hashKey;
+
+    /**
+     * Number of half moves since the last capture or pawn move, for the fifty-move rule.
+     */
+    private int halfmoveClock;
+
+    /**
+     * Number of the full move, starts at 1 and is incremented after each move of Black.
+     */
+    private int fullmoveNumber = 1;
+
+    /**
+     * Hash keys of the earlier positions of the game, the last one is the position before the last move.
+     * Only the last {@link #halfmoveClock} entries can be repeated; when copying a position, the older
+     * ones are dropped.
+     */
+    private long[] keyHistory;
+
+    private int keyHistoryLength;
+
+    // Undo stack, one entry per move made and not yet taken back
+
+    private int undoCount;
+
+    private int[] undoMoves;
+
+    private Square[] undoEnPassantSquares;
+
+    private int[] undoCastlingRights;
+
+    private long[] undoHashKeys;
+
+    private int[] undoHalfmoveClocks;
+
+    /**
+     * Creates a mutable copy of the given position, ready for making and unmaking moves.
+     *
+     * @param position position to start from
+     */
+    public MutablePosition(Position position) {
+        allocateUndoStack(INITIAL_UNDO_CAPACITY);
+        setPosition(position);
+    }
+
+    /**
+     * Creates an empty board without undo stack. For internal use by {@link Position}.
+     */
+    MutablePosition() {
+        Arrays.fill(mailbox, NO_PIECE);
+        Arrays.fill(kingSquares, NO_PIECE);
+    }
+
+    /**
+     * Copy constructor without undo stack. For internal use by {@link Position}.
+     *
+     * @param source position to copy
+     */
+    MutablePosition(MutablePosition source) {
+        copyFrom(source);
+    }
+
+    /**
+     * Sets this board to the given position and clears the undo stack.
+     *
+     * @param position new position
+     */
+    public void setPosition(Position position) {
+        copyFrom(position.getBoard());
+        undoCount = 0;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current position.
+     *
+     * @return the position
+     */
+    public Position toPosition() {
+        return new Position(new MutablePosition(this));
+    }
+
+    private void copyFrom(MutablePosition source) {
+        this.toMove = source.toMove;
+        System.arraycopy(source.pieceBitboards, 0, this.pieceBitboards, 0, PIECES.length);
+        System.arraycopy(source.colourBitboards, 0, this.colourBitboards, 0, colourBitboards.length);
+        System.arraycopy(source.mailbox, 0, this.mailbox, 0, mailbox.length);
+        System.arraycopy(source.kingSquares, 0, this.kingSquares, 0, kingSquares.length);
+        this.enPassantSquare = source.enPassantSquare;
+        this.castlingRights = source.castlingRights;
+        this.hashKey = source.hashKey;
+        this.halfmoveClock = source.halfmoveClock;
+        this.fullmoveNumber = source.fullmoveNumber;
+
+        // positions before the last capture or pawn move cannot repeat
+        int length = Math.min(source.keyHistoryLength, source.halfmoveClock);
+        if (keyHistory == null || keyHistory.length <= length) {
+            // room for one more key, e.g. for Position#performMove; doMove grows the array if needed
+            keyHistory = new long[length + 1];
+        }
+        if (length > 0) {
+            System.arraycopy(source.keyHistory, source.keyHistoryLength - length, keyHistory, 0, length);
+        }
+        keyHistoryLength = length;
+    }
+
+    /**
+     * Returns which side is to move.
+     *
+     * @return {@link Colour#WHITE} or {@link Colour#BLACK}
+     */
+    public Colour getToMove() {
+        return toMove;
+    }
+
+    void setToMove(Colour toMove) {
+        this.toMove = toMove;
+    }
+
+    /**
+     * Returns the piece at the given coordinates, or {@code null} if the square is empty.
+     *
+     * @param rank rank index (0–7)
+     * @param file file index (0–7)
+     * @return piece on the square, or {@code null} if empty
+     */
+    public Piece getPiece(int rank, int file) {
+        int piece = getPieceIndex(rank * NUMBER_OF_FILES + file);
+        return piece == NO_PIECE ? null : PIECES[piece];
+    }
+
+    /**
+     * Returns the index of the piece on the given square, see {@link #pieceIndex(PieceType, Colour)}.
+     *
+     * @param square index of the square, 0-63
+     * @return piece index, or {@link #NO_PIECE} if the square is empty
+     */
+    public int getPieceIndex(int square) {
+        return mailbox[square];
+    }
+
+    /**
+     * Returns the piece on the given square, or {@code null} if the square is empty.
+     *
+     * @param square the square
+     * @return piece on the square, or {@code null} if empty
+     */
+    public Piece getPiece(Square square) {
+        return getPiece(square.getRank(), square.getFile());
+    }
+
+    void setPiece(int rank, int file, Piece piece) {
+        int index = rank * NUMBER_OF_FILES + file;
+        int current = getPieceIndex(index);
+        if (current != NO_PIECE) {
+            toggle(current, index);
+        }
+        if (piece != null) {
+            toggle(pieceIndex(piece.getType(), piece.getColour()), index);
+        }
+    }
+
+    public Square getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    void setEnPassantSquare(Square enPassantSquare) {
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * Returns the available castlings as a new set.
+     *
+     * @return castling types still allowed
+     */
+    public Set<CastlingType> getCastlingsAvailable() {
+        Set<CastlingType> castlingsAvailable = EnumSet.noneOf(CastlingType.class);
+        for (CastlingType castlingType : CASTLING_TYPES) {
+            if (castlingAllowed(castlingType)) {
+                castlingsAvailable.add(castlingType);
+            }
+        }
+        return castlingsAvailable;
+    }
+
+    void setCastlingsAvailable(Set<CastlingType> castlingsAvailable) {
+        castlingRights = 0;
+        for (CastlingType castlingType : castlingsAvailable) {
+            castlingRights |= castlingBit(castlingType);
+        }
+    }
+
+    /**
+     * Returns the available castlings as a mask.
+     *
+     * @return bit n is set if the castling type with ordinal n is allowed
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Returns whether the given castling type is still allowed.
+     *
+     * @param ct castling type, e.g. White kingside
+     * @return {@code true} if that castling is still available
+     */
+    public boolean castlingAllowed(final CastlingType ct) {
+        return (castlingRights & castlingBit(ct)) != 0;
+    }
+
+    /**
+     * Returns the number of half moves since the last capture or pawn move.
+     *
+     * @return halfmove clock as in FEN, 100 or more means a draw by the fifty-move rule
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Returns the number of the full move, it starts at 1 and is incremented after each move of Black.
+     *
+     * @return fullmove number as in FEN
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * Returns whether the current position has occurred before, with the same side to move, since the
+     * last capture or pawn move. Only positions with the same hash key are compared, at every second
+     * entry of the history, so the effort is proportional to the halfmove clock.
+     *
+     * @return {@code true} if the position is a repetition
+     */
+    public boolean isRepetition() {
+        int earliest = Math.max(0, keyHistoryLength - halfmoveClock);
+        for (int i = keyHistoryLength - 2; i >= earliest; i -= 2) {
+            if (keyHistory[i] == hashKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Zobrist key of the position, see {@link Position#getHashKey()}.
+     *
+     * @return 64 bit hash key
+     */
+    public long getHashKey() {
+        return hashKey;
+    }
+
+    /**
+     * Returns the squares occupied by pieces of the given type and colour as a bitboard.
+     *
+     * @param type   piece type, e.g. KNIGHT
+     * @param colour piece colour
+     * @return bitboard, bit n is set if the square with index n holds such a piece
+     */
+    public long getPieces(PieceType type, Colour colour) {
+        return pieceBitboards[pieceIndex(type, colour)];
+    }
+
+    /**
+     * Returns the squares occupied by pieces of the given colour as a bitboard.
+     *
+     * @param colour colour of the pieces
+     * @return bitboard, bit n is set if the square with index n holds a piece of that colour
+     */
+    public long getOccupiedSquares(Colour colour) {
+        return colourBitboards[colour.ordinal()];
+    }
+
+    /**
+     * Returns the squares occupied by any piece as a bitboard.
+     *
+     * @return bitboard, bit n is set if the square with index n is not empty
+     */
+    public long getOccupiedSquares() {
+        return colourBitboards[0] | colourBitboards[1];
+    }
+
+    /**
+     * Returns whether the given square is empty.
+     *
+     * @param s square to test
+     * @return {@code true} if no piece occupies the square
+     */
+    public boolean isFree(Square s) {
+        return (getOccupiedSquares() & (1L << s.getIndex())) == 0;
+    }
+
+    /**
+     * Returns the square of the king of the given colour, or {@code null} if that king is not on the board.
+     *
+     * @param colour colour of the king to find
+     * @return square of that king, or {@code null}
+     */
+    public Square findSquareWithKing(final Colour colour) {
+        int index = kingSquares[colour.ordinal()];
+        return index == NO_PIECE ? null : Square.of(index);
+    }
+
+    /**
+     * Returns the index of the square of the king of the given colour. The square is kept up to date
+     * with every move, so this is a cheap lookup.
+     *
+     * @param colour colour of the king to find
+     * @return square index 0-63, or {@link #NO_PIECE} if that king is not on the board
+     */
+    public int getKingSquare(final Colour colour) {
+        return kingSquares[colour.ordinal()];
+    }
+
+    /**
+     * Performs the given move on this board. The move can be taken back with {@link #unmakeMove()}.
+     *
+     * @param move move to perform, has to be valid in the current position
+     */
+    public void makeMove(Move move) {
+        makeMove(PackedMove.fromMove(move, this));
+    }
+
+    /**
+     * Performs the given packed move on this board. The move can be taken back with {@link #unmakeMove()}.
+     *
+     * @param move move to perform, see {@link PackedMove}, has to be valid in the current position
+     */
+    public void makeMove(int move) {
+        if (undoCount == undoMoves.length) {
+            allocateUndoStack(2 * undoMoves.length);
+        }
+        undoMoves[undoCount] = move;
+        undoEnPassantSquares[undoCount] = enPassantSquare;
+        undoCastlingRights[undoCount] = castlingRights;
+        undoHashKeys[undoCount] = hashKey;
+        undoHalfmoveClocks[undoCount] = halfmoveClock;
+        undoCount++;
+
+        doMove(move);
+    }
+
+    /**
+     * Takes back the last move performed with {@link #makeMove(int)}, and restores the previous
+     * position exactly (pieces, castling rights, en passant square, hash key, counters and history).
+     */
+    public void unmakeMove() {
+        undoCount--;
+        int move = undoMoves[undoCount];
+
+        toMove = toMove.otherColour();
+
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int piece = PackedMove.getPiece(move);
+
+        toggle(movedPieceOnTarget(move), to);
+        toggle(piece, from);
+
+        if (PackedMove.isCastling(move)) {
+            moveCastlingRook(piece, from, to, true);
+        }
+
+        int capturedPiece = PackedMove.getCapturedPiece(move);
+        if (capturedPiece != NO_PIECE) {
+            toggle(capturedPiece, capturedSquare(move));
+        }
+
+        enPassantSquare = undoEnPassantSquares[undoCount];
+        castlingRights = undoCastlingRights[undoCount];
+        hashKey = undoHashKeys[undoCount];
+        halfmoveClock = undoHalfmoveClocks[undoCount];
+        if (toMove != WHITE) {
+            fullmoveNumber--;
+        }
+        keyHistoryLength--;
+    }
+
+    /**
+     * Applies the move without touching the undo stack. Used by {@link #makeMove(int)} and by
+     * {@link Position#performMove(Move)}.
+     *
+     * @param move packed move to perform
+     */
+    void doMove(int move) {
+        if (keyHistory == null) {
+            keyHistory = new long[INITIAL_UNDO_CAPACITY];
+        } else if (keyHistoryLength == keyHistory.length) {
+            keyHistory = Arrays.copyOf(keyHistory, Math.max(2 * keyHistory.length, INITIAL_UNDO_CAPACITY));
+        }
+        keyHistory[keyHistoryLength++] = hashKey;
+
+        hashKey ^= castlingKey() ^ enPassantKey() ^ ZobristKeys.whiteToMove();
+
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int piece = PackedMove.getPiece(move);
+
+        // a captured piece leaves the board; en passant, it stands beside the source square
+        int capturedPiece = PackedMove.getCapturedPiece(move);
+        if (capturedPiece != NO_PIECE) {
+            toggle(capturedPiece, capturedSquare(move));
+        }
+
+        // apply piece movement, a promoted pawn becomes a new piece type
+        toggle(piece, from);
+        toggle(movedPieceOnTarget(move), to);
+
+        // en passant target square (if any)
+        if (PackedMove.isPawnAdvancesTwo(move)) {
+            int square = (from + to) / 2;
+            enPassantSquare = Square.of(square);
+        } else {
+            enPassantSquare = null;
+        }
+
+        if (PackedMove.isCastling(move)) {
+            moveCastlingRook(piece, from, to, false);
+        }
+        // a move from or to the home square of a king or rook ends the corresponding castlings
+        castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+
+        if (capturedPiece != NO_PIECE || PIECES[piece].getType() == PAWN) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+        if (toMove != WHITE) {
+            fullmoveNumber++;
+        }
+
+        toMove = toMove.otherColour();
+        hashKey ^= castlingKey() ^ enPassantKey();
+    }
+
+    /**
+     * Piece which stands on the target square after the move, i.e. the moving piece or the new one
+     * in case of a promotion.
+     */
+    private int movedPieceOnTarget(int move) {
+        PieceType promotion = PackedMove.getPromotion(move);
+        if (promotion != null) {
+            return pieceIndex(promotion, PIECES[PackedMove.getPiece(move)].getColour());
+        }
+        return PackedMove.getPiece(move);
+    }
+
+    /**
+     * Square of the captured piece. It differs from the target square for en passant only.
+     */
+    private static int capturedSquare(int move) {
+        int to = PackedMove.getTo(move);
+        if (PackedMove.isEnPassant(move)) {
+            int from = PackedMove.getFrom(move);
+            return from - from % NUMBER_OF_FILES + to % NUMBER_OF_FILES;
+        }
+        return to;
+    }
+
+    /**
+     * Moves the rook belonging to a castling move, or back when the move is taken back.
+     */
+    private void moveCastlingRook(int king, int from, int to, boolean back) {
+        int rankOffset = from - from % NUMBER_OF_FILES;
+        int rook = pieceIndex(ROOK, PIECES[king].getColour());
+        boolean kingside = to % NUMBER_OF_FILES == 6;
+        int outer = kingside ? 7 : 0;
+        int inner = kingside ? 5 : 3;
+        if (back) {
+            toggle(rook, rankOffset + inner);
+            toggle(rook, rankOffset + outer);
+        } else {
+            toggle(rook, rankOffset + outer);
+            toggle(rook, rankOffset + inner);
+        }
+    }
+
+    /**
+     * Calculates the Zobrist key from scratch, e.g. after the position has been set up from FEN.
+     */
+    void recalculateHashKey() {
+        long key = castlingKey() ^ enPassantKey();
+        for (int i = 0; i < pieceBitboards.length; ++i) {
+            long bitboard = pieceBitboards[i];
+            while (bitboard != 0) {
+                key ^= ZobristKeys.piece(i, Long.numberOfTrailingZeros(bitboard));
+                bitboard &= bitboard - 1;
+            }
+        }
+        if (toMove == WHITE) {
+            key ^= ZobristKeys.whiteToMove();
+        }
+        hashKey = key;
+    }
+
+    /**
+     * Part of the Zobrist key for the castling rights.
+     */
+    private long castlingKey() {
+        return ZobristKeys.castlingRights(castlingRights);
+    }
+
+    /**
+     * Part of the Zobrist key for the en passant square. As in the Polyglot format, it only counts if
+     * a pawn of the side to move stands beside the pawn which has just advanced two squares.
+     */
+    private long enPassantKey() {
+        if (enPassantSquare != null) {
+            int rank = enPassantSquare.getRank() + (toMove == WHITE ? +1 : -1);
+            int file = enPassantSquare.getFile();
+            long pawns = getPieces(PAWN, toMove);
+            if ((file > 0 && (pawns & (1L << (rank * NUMBER_OF_FILES + file - 1))) != 0)
+                    || (file < 7 && (pawns & (1L << (rank * NUMBER_OF_FILES + file + 1))) != 0)) {
+                return ZobristKeys.enPassant(file);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Puts the piece on the square if it is not there, or removes it if it is. Updates the hash key,
+     * the mailbox and the king squares.
+     */
+    private void toggle(int piece, int square) {
+        long bit = 1L << square;
+        boolean removed = (pieceBitboards[piece] & bit) != 0;
+        pieceBitboards[piece] ^= bit;
+        Piece p = PIECES[piece];
+        colourBitboards[p.getColour().ordinal()] ^= bit;
+        mailbox[square] = removed ? NO_PIECE : piece;
+        if (p.getType() == KING) {
+            kingSquares[p.getColour().ordinal()] = removed ? NO_PIECE : square;
+        }
+        hashKey ^= ZobristKeys.piece(piece, square);
+    }
+
+    private void allocateUndoStack(int capacity) {
+        if (undoMoves == null) {
+            undoMoves = new int[capacity];
+            undoEnPassantSquares = new Square[capacity];
+            undoCastlingRights = new int[capacity];
+            undoHashKeys = new long[capacity];
+            undoHalfmoveClocks = new int[capacity];
+        } else {
+            undoMoves = Arrays.copyOf(undoMoves, capacity);
+            undoEnPassantSquares = Arrays.copyOf(undoEnPassantSquares, capacity);
+            undoCastlingRights = Arrays.copyOf(undoCastlingRights, capacity);
+            undoHashKeys = Arrays.copyOf(undoHashKeys, capacity);
+            undoHalfmoveClocks = Arrays.copyOf(undoHalfmoveClocks, capacity);
+        }
+    }
+
+    /**
+     * Index of a piece within the bitboards, 0-11. Used for packed moves, see {@link PackedMove}.
+     *
+     * @param type   piece type
+     * @param colour piece colour
+     * @return piece index
+     */
+    public static int pieceIndex(PieceType type, Colour colour) {
+        return colour.ordinal() * PIECE_TYPES.length + type.ordinal();
+    }
+
+    private static int castlingBit(CastlingType castlingType) {
+        return 1 << castlingType.ordinal();
+    }
+
+    /**
+     * Piece for an index as returned by {@link #pieceIndex(PieceType, Colour)}.
+     */
+    static Piece piece(int pieceIndex) {
+        return PIECES[pieceIndex];
+    }
+
+    /**
+     * Returns the position as a FEN string.
+     */
+    @Override
+    public String toString() {
+        return toPosition().toString();
+    }
+}
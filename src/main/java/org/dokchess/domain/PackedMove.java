@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.domain;
+
+/**
+ * Encoding of a move as a single int, used by move generation and search instead of {@link Move}
+ * objects. Pieces are given by their index 0-11, see {@link MutablePosition#pieceIndex(PieceType, Colour)},
+ * squares by their index 0-63, see {@link Square#getIndex()}.
+ * <p/>
+ * Bit layout:
+ * <pre>
+ *  0- 5  source square
+ *  6-11  target square
+ * 12-15  moving piece
+ * 16-19  captured piece, 15 if none
+ * 20-22  piece type ordinal of a promotion, 7 if none
+ * 24-26  flags (en passant, castling, pawn advances two)
+ * </pre>
+ * Packed moves are converted to {@link Move} with {@link #toMove(int)} at the boundaries, i.e.
+ * where the engine hands over a move to the user interface.
+ *
+ * @author StefanZ
+ */
+public final class PackedMove {
+
+    /**
+     * Value for "no move". It is never a valid move, because source and target square are equal.
+     */
+    public static final int NO_MOVE = 0;
+
+    /**
+     * Flag for a pawn capturing en passant.
+     */
+    public static final int EN_PASSANT = 1 << 24;
+
+    /**
+     * Flag for castling, i.e. a king move of two squares.
+     */
+    public static final int CASTLING = 1 << 25;
+
+    /**
+     * Flag for a pawn advancing two squares from its starting rank.
+     */
+    public static final int PAWN_ADVANCES_TWO = 1 << 26;
+
+    private static final int SQUARE_MASK = 0x3F;
+
+    private static final int PIECE_MASK = 0xF;
+
+    private static final int NO_CAPTURE = 0xF;
+
+    private static final int NO_PROMOTION = 0x7;
+
+    private static final int TO_SHIFT = 6;
+
+    private static final int PIECE_SHIFT = 12;
+
+    private static final int CAPTURED_SHIFT = 16;
+
+    private static final int PROMOTION_SHIFT = 20;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    /**
+     * Tool class, constructor not visible.
+     */
+    private PackedMove() {
+    }
+
+    /**
+     * Creates a move without flags.
+     *
+     * @param from          index of the source square
+     * @param to            index of the target square
+     * @param piece         index of the moving piece
+     * @param capturedPiece index of the captured piece, or {@link MutablePosition#NO_PIECE}
+     * @return packed move
+     */
+    public static int create(int from, int to, int piece, int capturedPiece) {
+        return create(from, to, piece, capturedPiece, 0);
+    }
+
+    /**
+     * Creates a move.
+     *
+     * @param from          index of the source square
+     * @param to            index of the target square
+     * @param piece         index of the moving piece
+     * @param capturedPiece index of the captured piece, or {@link MutablePosition#NO_PIECE}
+     * @param flags         combination of {@link #EN_PASSANT}, {@link #CASTLING} and {@link #PAWN_ADVANCES_TWO}
+     * @return packed move
+     */
+    public static int create(int from, int to, int piece, int capturedPiece, int flags) {
+        int captured = capturedPiece == MutablePosition.NO_PIECE ? NO_CAPTURE : capturedPiece;
+        return from | to << TO_SHIFT | piece << PIECE_SHIFT | captured << CAPTURED_SHIFT
+                | NO_PROMOTION << PROMOTION_SHIFT | flags;
+    }
+
+    /**
+     * Creates a pawn move with promotion.
+     *
+     * @param from          index of the source square
+     * @param to            index of the target square
+     * @param piece         index of the moving pawn
+     * @param capturedPiece index of the captured piece, or {@link MutablePosition#NO_PIECE}
+     * @param promotion     new piece type
+     * @return packed move
+     */
+    public static int createPromotion(int from, int to, int piece, int capturedPiece, PieceType promotion) {
+        int move = create(from, to, piece, capturedPiece);
+        return move & ~(NO_PROMOTION << PROMOTION_SHIFT) | promotion.ordinal() << PROMOTION_SHIFT;
+    }
+
+    /**
+     * Packs a move object. The position is needed to determine the captured piece.
+     *
+     * @param move     move to pack
+     * @param position position before the move
+     * @return packed move
+     */
+    public static int fromMove(Move move, MutablePosition position) {
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        Piece piece = move.getPiece();
+        int pieceIndex = MutablePosition.pieceIndex(piece.getType(), piece.getColour());
+
+        int flags = 0;
+        int capturedPiece = position.getPieceIndex(to);
+        if (move.isPawnMove() && move.getTo().equals(position.getEnPassantSquare())
+                && move.getFrom().getFile() != move.getTo().getFile()) {
+            flags = EN_PASSANT;
+            capturedPiece = MutablePosition.pieceIndex(PieceType.PAWN, piece.getColour().otherColour());
+        } else if (move.isCastling()) {
+            flags = CASTLING;
+        } else if (move.isPawnAdvancesTwo()) {
+            flags = PAWN_ADVANCES_TWO;
+        }
+
+        if (move.isPromotion()) {
+            return createPromotion(from, to, pieceIndex, capturedPiece, move.getPromotion());
+        }
+        return create(from, to, pieceIndex, capturedPiece, flags);
+    }
+
+    /**
+     * Unpacks a move into a move object.
+     *
+     * @param move packed move
+     * @return move object
+     */
+    public static Move toMove(int move) {
+        return new Move(MutablePosition.piece(getPiece(move)),
+                Square.of(getFrom(move)), Square.of(getTo(move)),
+                isCapture(move), getPromotion(move));
+    }
+
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTo(int move) {
+        return move >>> TO_SHIFT & SQUARE_MASK;
+    }
+
+    public static int getPiece(int move) {
+        return move >>> PIECE_SHIFT & PIECE_MASK;
+    }
+
+    /**
+     * Returns the index of the captured piece.
+     *
+     * @param move packed move
+     * @return piece index, or {@link MutablePosition#NO_PIECE} if the move is not a capture
+     */
+    public static int getCapturedPiece(int move) {
+        int captured = move >>> CAPTURED_SHIFT & PIECE_MASK;
+        return captured == NO_CAPTURE ? MutablePosition.NO_PIECE : captured;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move >>> CAPTURED_SHIFT & PIECE_MASK) != NO_CAPTURE;
+    }
+
+    /**
+     * Returns the new piece type in case of pawn promotion.
+     *
+     * @param move packed move
+     * @return the chosen piece type, or {@code null} if there is no promotion
+     */
+    public static PieceType getPromotion(int move) {
+        int promotion = move >>> PROMOTION_SHIFT & NO_PROMOTION;
+        return promotion == NO_PROMOTION ? null : PIECE_TYPES[promotion];
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move >>> PROMOTION_SHIFT & NO_PROMOTION) != NO_PROMOTION;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    public static boolean isPawnAdvancesTwo(int move) {
+        return (move & PAWN_ADVANCES_TWO) != 0;
+    }
+}
@@ -20,12 +20,25 @@ package org.dokchess.domain;
 
 /**
  * A chessman, a single piece in the game of chess.
- * The class is immutable.
+ * The class is immutable. There is exactly one instance per type and colour, obtained with
+ * {@link #of(PieceType, Colour)}, so pieces can be compared by identity.
  *
  * @author StefanZ
  */
 public final class Piece {
 
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private static final Piece[] PIECES = new Piece[Colour.values().length * TYPES.length];
+
+    static {
+        for (Colour colour : Colour.values()) {
+            for (PieceType type : TYPES) {
+                PIECES[colour.ordinal() * TYPES.length + type.ordinal()] = new Piece(type, colour);
+            }
+        }
+    }
+
     /**
      * piece colour. e.g. WHITE.
      */
@@ -36,15 +49,20 @@ public final class Piece {
      */
     private final PieceType type;
 
+    private Piece(final PieceType t, final Colour c) {
+        this.type = t;
+        this.colour = c;
+    }
+
     /**
-     * Creates an imutable piece.
+     * Returns the piece with the given type and colour.
      *
      * @param t piece type. e.g. PAWN.
      * @param c piece colour. e.g. WHITE.
+     * @return the piece
      */
-    public Piece(final PieceType t, final Colour c) {
-        this.type = t;
-        this.colour = c;
+    public static Piece of(final PieceType t, final Colour c) {
+        return PIECES[c.ordinal() * TYPES.length + t.ordinal()];
     }
 
     /**
@@ -113,25 +131,4 @@ public final class Piece {
     public int hashCode() {
         return (colour.ordinal() * 10) + type.ordinal();
     }
-
-    @Override
-    public boolean equals(final Object obj) {
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Piece otherPiece = (Piece) obj;
-        if (type != otherPiece.type) {
-            return false;
-        }
-        if (colour != otherPiece.colour) {
-            return false;
-        }
-        return true;
-    }
 }
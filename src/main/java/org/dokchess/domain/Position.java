@@ -20,30 +20,27 @@ package org.dokchess.domain;
 
 import java.util.*;
 
-import static org.dokchess.domain.CastlingType.*;
-import static org.dokchess.domain.Colour.BLACK;
-import static org.dokchess.domain.Colour.WHITE;
-import static org.dokchess.domain.PieceType.KING;
-import static org.dokchess.domain.PieceType.ROOK;
-import static org.dokchess.domain.Squares.*;
-
 /**
  * Represents a chess position: piece placement, side to move, castling rights, etc.
+ * <p/>
+ * Piece placement is stored as bitboards: one 64 bit set per piece kind (colour and type) plus
+ * the occupied squares of each colour. Bit n corresponds to the square with {@link Square#getIndex()} n,
+ * i.e. bit 0 is a8 and bit 63 is h1.
+ * <p/>
+ * Each position carries a 64 bit Zobrist key (see {@link #getHashKey()}), which is updated
+ * incrementally when a move is performed.
+ * <p/>
+ * The class is immutable. The search uses {@link MutablePosition} instead, which makes and
+ * takes back moves in place.
  *
  * @author StefanZ
  */
 public final class Position {
 
-    private static final int NUMBER_OF_RANKS = 8;
-    private static final int NUMBER_OF_FILES = 8;
-
-    private Colour toMove;
-
-    private Piece[][] board;
-
-    private Square enPassantSquare;
-
-    private Set<CastlingType> castlingsAvailable;
+    /**
+     * Board state. Never changed after construction, except while setting up from FEN.
+     */
+    private final MutablePosition board;
 
     /**
      * Creates the starting position. White moves first.
@@ -58,21 +55,21 @@ public final class Position {
      * @param fen position as a string in Forsyth–Edwards notation
      */
     public Position(final String fen) {
-        this.board = new Piece[NUMBER_OF_RANKS][NUMBER_OF_FILES];
+        this.board = new MutablePosition();
         ForsythEdwardsNotation.fromString(this, fen);
     }
 
     /**
-     * Copy constructor. For internal use only (the class is effectively immutable to callers).
+     * Creates a position with the given board state, which must not be changed afterwards.
      *
-     * @param source position to copy
+     * @param board board state
      */
-    Position(Position source) {
-        this.toMove = source.toMove;
-        this.castlingsAvailable = source.castlingsAvailable;
-        this.enPassantSquare = source.enPassantSquare;
-        this.board = new Piece[NUMBER_OF_RANKS][];
-        System.arraycopy(source.board, 0, this.board, 0, NUMBER_OF_RANKS);
+    Position(MutablePosition board) {
+        this.board = board;
+    }
+
+    MutablePosition getBoard() {
+        return board;
     }
 
     /**
@@ -81,11 +78,11 @@ public final class Position {
      * @return {@link Colour#WHITE} or {@link Colour#BLACK}
      */
     public Colour getToMove() {
-        return toMove;
+        return board.getToMove();
     }
 
     void setToMove(Colour toMove) {
-        this.toMove = toMove;
+        board.setToMove(toMove);
     }
 
     /**
@@ -96,11 +93,11 @@ public final class Position {
      * @return piece on the square, or {@code null} if empty
      */
     public Piece getPiece(int rank, int file) {
-        return board[rank][file];
+        return board.getPiece(rank, file);
     }
 
     void setPiece(int rank, int file, Piece piece) {
-        board[rank][file] = piece;
+        board.setPiece(rank, file, piece);
     }
 
     /**
@@ -110,27 +107,75 @@ public final class Position {
      * @return piece on the square, or {@code null} if empty
      */
     public Piece getPiece(Square square) {
-        return board[square.getRank()][square.getFile()];
+        return board.getPiece(square);
     }
 
     void setPiece(Square square, Piece piece) {
-        board[square.getRank()][square.getFile()] = piece;
+        board.setPiece(square.getRank(), square.getFile(), piece);
     }
 
     public Square getEnPassantSquare() {
-        return enPassantSquare;
+        return board.getEnPassantSquare();
     }
 
     void setEnPassantSquare(Square enPassantSquare) {
-        this.enPassantSquare = enPassantSquare;
+        board.setEnPassantSquare(enPassantSquare);
     }
 
     public Set<CastlingType> getCastlingsAvailable() {
-        return castlingsAvailable;
+        return board.getCastlingsAvailable();
     }
 
     void setCastlingsAvailable(Set<CastlingType> castlingsAvailable) {
-        this.castlingsAvailable = castlingsAvailable;
+        board.setCastlingsAvailable(castlingsAvailable);
+    }
+
+    /**
+     * Returns the Zobrist key of the position. Equal positions (piece placement, side to move,
+     * castling rights and en passant capture possibility) have equal keys. The key is compatible
+     * with the Polyglot opening book format.
+     *
+     * @return 64 bit hash key
+     */
+    public long getHashKey() {
+        return board.getHashKey();
+    }
+
+    /**
+     * Calculates the Zobrist key from scratch, e.g. after the position has been set up from FEN.
+     */
+    void recalculateHashKey() {
+        board.recalculateHashKey();
+    }
+
+    /**
+     * Returns the squares occupied by pieces of the given type and colour as a bitboard.
+     *
+     * @param type   piece type, e.g. KNIGHT
+     * @param colour piece colour
+     * @return bitboard, bit n is set if the square with index n holds such a piece
+     */
+    public long getPieces(PieceType type, Colour colour) {
+        return board.getPieces(type, colour);
+    }
+
+    /**
+     * Returns the squares occupied by pieces of the given colour as a bitboard.
+     *
+     * @param colour colour of the pieces
+     * @return bitboard, bit n is set if the square with index n holds a piece of that colour
+     */
+    public long getOccupiedSquares(Colour colour) {
+        return board.getOccupiedSquares(colour);
+    }
+
+    /**
+     * Returns the squares occupied by any piece as a bitboard.
+     *
+     * @return bitboard, bit n is set if the square with index n is not empty
+     */
+    public long getOccupiedSquares() {
+        return board.getOccupiedSquares();
     }
 
     /**
@@ -142,13 +187,10 @@ public final class Position {
     public List<Square> findSquaresWith(final Piece piece) {
         List<Square> squares = new ArrayList<>();
 
-        for (int rank = 0; rank < NUMBER_OF_RANKS; ++rank) {
-            for (int file = 0; file < NUMBER_OF_FILES; ++file) {
-                Piece currentPiece = getPiece(rank, file);
-                if (currentPiece != null && currentPiece.equals(piece)) {
-                    squares.add(new Square(rank, file));
-                }
-            }
+        long bitboard = getPieces(piece.getType(), piece.getColour());
+        while (bitboard != 0) {
+            squares.add(squareAt(Long.numberOfTrailingZeros(bitboard)));
+            bitboard &= bitboard - 1;
         }
 
         return squares;
@@ -161,174 +203,76 @@ public final class Position {
      * @return square of that king, or {@code null}
      */
     public Square findSquareWithKing(final Colour colour) {
-        for (int rank = 0; rank < NUMBER_OF_RANKS; ++rank) {
-            for (int file = 0; file < NUMBER_OF_FILES; ++file) {
-                Piece piece = getPiece(rank, file);
-                if (piece != null && piece.is(KING)
-                        && piece.is(colour)) {
-                    return new Square(rank, file);
-                }
-            }
-        }
-        return null;
+        return board.findSquareWithKing(colour);
     }
 
     public Set<Square> squaresWithColour(final Colour colour) {
         HashSet<Square> squares = new HashSet<Square>();
 
-        for (int rank = 0; rank < NUMBER_OF_RANKS; ++rank) {
-            for (int file = 0; file < NUMBER_OF_FILES; ++file) {
-                Piece piece = getPiece(rank, file);
-                if (piece != null && piece.is(colour)) {
-                    squares.add(new Square(rank, file));
-                }
-            }
+        long bitboard = getOccupiedSquares(colour);
+        while (bitboard != 0) {
+            squares.add(squareAt(Long.numberOfTrailingZeros(bitboard)));
+            bitboard &= bitboard - 1;
         }
 
         return squares;
     }
 
     public Position performMove(Move move) {
-        Position newPosition = copyPositionWithAffectedRanks(this,
-                move);
-
-        // apply piece movement
-        newPosition.setPiece(move.getFrom(), null);
-
-        if (move.isPromotion()) {
-            // pawn promoted to a new piece type
-            newPosition.setPiece(move.getTo(),
-                    new Piece(move.getPromotion(), toMove));
-        } else {
-            newPosition.setPiece(move.getTo(), move.getPiece());
-        }
-
-        // en passant target square (if any)
-        if (move.isPawnAdvancesTwo()) {
-            int delta = move.getPiece().is(WHITE) ? -1 : +1;
-            newPosition.enPassantSquare = new Square(move.getFrom().getRank()
-                    + delta, move.getFrom().getFile());
-        } else {
-            newPosition.enPassantSquare = null;
-        }
-
-        if (move.isCastling()) {
-            completeCastling(move, newPosition);
-        } else {
-            adjustCastlingRights(move, newPosition);
-        }
+        MutablePosition newBoard = new MutablePosition(board);
+        newBoard.doMove(PackedMove.fromMove(move, newBoard));
+        return new Position(newBoard);
+    }
 
-        newPosition.toMove = this.toMove.otherColour();
+    /**
+     * Returns the number of half moves since the last capture or pawn move.
+     *
+     * @return halfmove clock as in FEN, 100 or more means a draw by the fifty-move rule
+     */
+    public int getHalfmoveClock() {
+        return board.getHalfmoveClock();
+    }
 
-        return newPosition;
+    void setHalfmoveClock(int halfmoveClock) {
+        board.setHalfmoveClock(halfmoveClock);
     }
 
     /**
-     * Returns whether the given castling type is still allowed.
+     * Returns the number of the full move, it starts at 1 and is incremented after each move of Black.
      *
-     * @param ct castling type, e.g. White kingside
-     * @return {@code true} if that castling is still available
+     * @return fullmove number as in FEN
      */
-    public boolean castlingAllowed(final CastlingType ct) {
-        return castlingsAvailable.contains(ct);
+    public int getFullmoveNumber() {
+        return board.getFullmoveNumber();
+    }
+
+    void setFullmoveNumber(int fullmoveNumber) {
+        board.setFullmoveNumber(fullmoveNumber);
     }
 
     /**
-     * After the king has moved for castling, moves the corresponding rook and updates castling rights.
+     * Returns whether the position has occurred before in the game (with the same side to move) since
+     * the last capture or pawn move. Positions created by {@link #performMove(Move)} keep the hash keys
+     * of their predecessors for this purpose.
+     *
+     * @return {@code true} if the position is a repetition
      */
-    private void completeCastling(Move move, Position newPos) {
-        if (move.isCastlingKingside()) {
-            newPos.castlingsAvailable = EnumSet.copyOf(castlingsAvailable);
-            switch (getToMove()) {
-                case WHITE:
-                    newPos.setPiece(h1, null);
-                    newPos.setPiece(f1, new Piece(ROOK, WHITE));
-                    newPos.castlingsAvailable.remove(WHITE_KINGSIDE);
-                    newPos.castlingsAvailable.remove(WHITE_QUEENSIDE);
-                    break;
-                case BLACK:
-                    newPos.setPiece(h8, null);
-                    newPos.setPiece(f8, new Piece(ROOK, BLACK));
-                    newPos.castlingsAvailable.remove(BLACK_KINGSIDE);
-                    newPos.castlingsAvailable.remove(BLACK_QUEENSIDE);
-                    break;
-            }
-        } else if (move.isCastlingQueenside()) {
-            newPos.castlingsAvailable = EnumSet.copyOf(castlingsAvailable);
-            switch (getToMove()) {
-                case WHITE:
-                    newPos.setPiece(a1, null);
-                    newPos.setPiece(d1, new Piece(ROOK, WHITE));
-                    newPos.castlingsAvailable.remove(WHITE_KINGSIDE);
-                    newPos.castlingsAvailable.remove(WHITE_QUEENSIDE);
-                    break;
-                case BLACK:
-                    newPos.setPiece(a8, null);
-                    newPos.setPiece(d8, new Piece(ROOK, BLACK));
-                    newPos.castlingsAvailable.remove(BLACK_KINGSIDE);
-                    newPos.castlingsAvailable.remove(BLACK_QUEENSIDE);
-                    break;
-            }
-        }
+    public boolean isRepetition() {
+        return board.isRepetition();
     }
 
     /**
-     * Updates castling rights when the move is not castling (king or rook moves may forfeit rights).
+     * Returns whether the given castling type is still allowed.
+     *
+     * @param ct castling type, e.g. White kingside
+     * @return {@code true} if that castling is still available
      */
-    private void adjustCastlingRights(Move move, Position newPos) {
-
-        if (castlingsAvailable.size() > 0) {
-            if (move.getPiece().is(KING)) {
-                newPos.castlingsAvailable = EnumSet.copyOf(castlingsAvailable);
-                switch (toMove) {
-                    case WHITE:
-                        newPos.castlingsAvailable.remove(WHITE_KINGSIDE);
-                        newPos.castlingsAvailable.remove(WHITE_QUEENSIDE);
-                        break;
-                    case BLACK:
-                        newPos.castlingsAvailable.remove(BLACK_KINGSIDE);
-                        newPos.castlingsAvailable.remove(BLACK_QUEENSIDE);
-                        break;
-                }
-            } else if (move.getPiece().is(ROOK)) {
-                newPos.castlingsAvailable = EnumSet.copyOf(castlingsAvailable);
-                switch (toMove) {
-                    case WHITE:
-                        if (move.getFrom().equals(a1)) {
-                            newPos.castlingsAvailable.remove(WHITE_QUEENSIDE);
-                        } else if (move.getFrom().equals(h1)) {
-                            newPos.castlingsAvailable.remove(WHITE_KINGSIDE);
-                        }
-                        break;
-                    case BLACK:
-                        if (move.getFrom().equals(a8)) {
-                            newPos.castlingsAvailable.remove(BLACK_QUEENSIDE);
-                        } else if (move.getFrom().equals(h8)) {
-                            newPos.castlingsAvailable.remove(BLACK_KINGSIDE);
-                        }
-                        break;
-                }
-            }
-        }
+    public boolean castlingAllowed(final CastlingType ct) {
+        return board.castlingAllowed(ct);
     }
 
-    private Position copyPositionWithAffectedRanks(Position source,
-                                                   Move move) {
-        Position newPos = new Position(source);
-
-        int rank1 = move.getFrom().getRank();
-        int rank2 = move.getTo().getRank();
-
-        newPos.board[rank1] = new Piece[NUMBER_OF_FILES];
-        System.arraycopy(source.board[rank1], 0, newPos.board[rank1],
-                0, NUMBER_OF_FILES);
-        if (rank2 != rank1) {
-            newPos.board[rank2] = new Piece[NUMBER_OF_FILES];
-            System.arraycopy(source.board[rank2], 0,
-                    newPos.board[rank2], 0, NUMBER_OF_FILES);
-        }
-
-        return newPos;
+    private static Square squareAt(int index) {
+        return Square.of(index);
     }
 
     /**
@@ -338,7 +282,7 @@ public final class Position {
      * @return {@code true} if no piece occupies the square
      */
     public boolean isFree(Square s) {
-        return this.getPiece(s) == null;
+        return board.isFree(s);
     }
 
     /**
@@ -25,12 +25,21 @@ package org.dokchess.domain;
  * The chessboard is composed of an 8 x 8 grid of 64 equal squares alternately
  * light (the "white" squares) and dark (the "black" squares).
  *
- * The class is immutable.
+ * The class is immutable. There is exactly one instance per square, obtained with the
+ * {@code of} methods, so squares can be compared by identity.
  *
  * @author StefanZ
  */
 public final class Square {
 
+    private static final Square[] SQUARES = new Square[64];
+
+    static {
+        for (int index = 0; index < SQUARES.length; ++index) {
+            SQUARES[index] = new Square(index / 8, index % 8);
+        }
+    }
+
     /**
      * File (column) of the square, values 0-7, 0 is the a file.
      */
@@ -41,23 +50,39 @@ public final class Square {
      */
     private final int rank;
 
+    private Square(final int rank, final int file) {
+        this.rank = rank;
+        this.file = file;
+    }
+
     /**
-     * Creates a square by coordinates.
+     * Returns a square by coordinates.
      *
      * @param rank rank of the sqaure, 0-7
      * @param file file of the sqaure, 0-7, 0 is a
+     * @return the square
      */
-    public Square(final int rank, final int file) {
-        this.rank = rank;
-        this.file = file;
+    public static Square of(final int rank, final int file) {
+        return SQUARES[rank * 8 + file];
+    }
+
+    /**
+     * Returns a square by its index, see {@link #getIndex()}.
+     *
+     * @param index index of the square, 0-63
+     * @return the square
+     */
+    public static Square of(final int index) {
+        return SQUARES[index];
     }
 
     /**
-     * Creates a square by name.
+     * Returns a square by name.
      *
      * @param name Name des sqaure, e.g. "e4"
+     * @return the square
      */
-    public Square(final String name) {
+    public static Square of(final String name) {
 
         // a - h
         char nameFile = name.charAt(0);
@@ -69,8 +94,7 @@ public final class Square {
             nameFile = Character.toLowerCase(nameFile);
         }
 
-        this.rank = (7 - (nameRank - '1'));
-        this.file = nameFile - 'a';
+        return of(7 - (nameRank - '1'), nameFile - 'a');
     }
 
     /**
@@ -87,30 +111,18 @@ public final class Square {
         return this.rank;
     }
 
-    @Override
-    public int hashCode() {
+    /**
+     * Index of the square within a bitboard, values 0-63. 0 is a8, 7 is h8, 63 is h1.
+     *
+     * @return rank * 8 + file
+     */
+    public int getIndex() {
         return rank * 8 + file;
     }
 
     @Override
-    public boolean equals(final Object obj) {
-        if (this == obj) {
-            return true;
-        }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
-            return false;
-        }
-        Square other = (Square) obj;
-        if (rank != other.rank) {
-            return false;
-        }
-        if (file != other.file) {
-            return false;
-        }
-        return true;
+    public int hashCode() {
+        return getIndex();
     }
 
     @Override
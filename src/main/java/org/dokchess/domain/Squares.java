@@ -29,75 +29,75 @@ public final class Squares {
     private Squares() {
     }
 
-    public static final Square a1 = new Square("a1");
-    public static final Square a2 = new Square("a2");
-    public static final Square a3 = new Square("a3");
-    public static final Square a4 = new Square("a4");
-    public static final Square a5 = new Square("a5");
-    public static final Square a6 = new Square("a6");
-    public static final Square a7 = new Square("a7");
-    public static final Square a8 = new Square("a8");
+    public static final Square a1 = Square.of("a1");
+    public static final Square a2 = Square.of("a2");
+    public static final Square a3 = Square.of("a3");
+    public static final Square a4 = Square.of("a4");
+    public static final Square a5 = Square.of("a5");
+    public static final Square a6 = Square.of("a6");
+    public static final Square a7 = Square.of("a7");
+    public static final Square a8 = Square.of("a8");
 
-    public static final Square b1 = new Square("b1");
-    public static final Square b2 = new Square("b2");
-    public static final Square b3 = new Square("b3");
-    public static final Square b4 = new Square("b4");
-    public static final Square b5 = new Square("b5");
-    public static final Square b6 = new Square("b6");
-    public static final Square b7 = new Square("b7");
-    public static final Square b8 = new Square("b8");
+    public static final Square b1 = Square.of("b1");
+    public static final Square b2 = Square.of("b2");
+    public static final Square b3 = Square.of("b3");
+    public static final Square b4 = Square.of("b4");
+    public static final Square b5 = Square.of("b5");
+    public static final Square b6 = Square.of("b6");
+    public static final Square b7 = Square.of("b7");
+    public static final Square b8 = Square.of("b8");
 
-    public static final Square c1 = new Square("c1");
-    public static final Square c2 = new Square("c2");
-    public static final Square c3 = new Square("c3");
-    public static final Square c4 = new Square("c4");
-    public static final Square c5 = new Square("c5");
-    public static final Square c6 = new Square("c6");
-    public static final Square c7 = new Square("c7");
-    public static final Square c8 = new Square("c8");
+    public static final Square c1 = Square.of("c1");
+    public static final Square c2 = Square.of("c2");
+    public static final Square c3 = Square.of("c3");
+    public static final Square c4 = Square.of("c4");
+    public static final Square c5 = Square.of("c5");
+    public static final Square c6 = Square.of("c6");
+    public static final Square c7 = Square.of("c7");
+    public static final Square c8 = Square.of("c8");
 
-    public static final Square d1 = new Square("d1");
-    public static final Square d2 = new Square("d2");
-    public static final Square d3 = new Square("d3");
-    public static final Square d4 = new Square("d4");
-    public static final Square d5 = new Square("d5");
-    public static final Square d6 = new Square("d6");
-    public static final Square d7 = new Square("d7");
-    public static final Square d8 = new Square("d8");
+    public static final Square d1 = Square.of("d1");
+    public static final Square d2 = Square.of("d2");
+    public static final Square d3 = Square.of("d3");
+    public static final Square d4 = Square.of("d4");
+    public static final Square d5 = Square.of("d5");
+    public static final Square d6 = Square.of("d6");
+    public static final Square d7 = Square.of("d7");
+    public static final Square d8 = Square.of("d8");
 
-    public static final Square e1 = new Square("e1");
-    public static final Square e2 = new Square("e2");
-    public static final Square e3 = new Square("e3");
-    public static final Square e4 = new Square("e4");
-    public static final Square e5 = new Square("e5");
-    public static final Square e6 = new Square("e6");
-    public static final Square e7 = new Square("e7");
-    public static final Square e8 = new Square("e8");
+    public static final Square e1 = Square.of("e1");
+    public static final Square e2 = Square.of("e2");
+    public static final Square e3 = Square.of("e3");
+    public static final Square e4 = Square.of("e4");
+    public static final Square e5 = Square.of("e5");
+    public static final Square e6 = Square.of("e6");
+    public static final Square e7 = Square.of("e7");
+    public static final Square e8 = Square.of("e8");
 
-    public static final Square f1 = new Square("f1");
-    public static final Square f2 = new Square("f2");
-    public static final Square f3 = new Square("f3");
-    public static final Square f4 = new Square("f4");
-    public static final Square f5 = new Square("f5");
-    public static final Square f6 = new Square("f6");
-    public static final Square f7 = new Square("f7");
-    public static final Square f8 = new Square("f8");
+    public static final Square f1 = Square.of("f1");
+    public static final Square f2 = Square.of("f2");
+    public static final Square f3 = Square.of("f3");
+    public static final Square f4 = Square.of("f4");
+    public static final Square f5 = Square.of("f5");
+    public static final Square f6 = Square.of("f6");
+    public static final Square f7 = Square.of("f7");
+    public static final Square f8 = Square.of("f8");
 
-    public static final Square g1 = new Square("g1");
-    public static final Square g2 = new Square("g2");
-    public static final Square g3 = new Square("g3");
-    public static final Square g4 = new Square("g4");
-    public static final Square g5 = new Square("g5");
-    public static final Square g6 = new Square("g6");
-    public static final Square g7 = new Square("g7");
-    public static final Square g8 = new Square("g8");
+    public static final Square g1 = Square.of("g1");
+    public static final Square g2 = Square.of("g2");
+    public static final Square g3 = Square.of("g3");
+    public static final Square g4 = Square.of("g4");
+    public static final Square g5 = Square.of("g5");
+    public static final Square g6 = Square.of("g6");
+    public static final Square g7 = Square.of("g7");
+    public static final Square g8 = Square.of("g8");
 
-    public static final Square h1 = new Square("h1");
-    public static final Square h2 = new Square("h2");
-    public static final Square h3 = new Square("h3");
-    public static final Square h4 = new Square("h4");
-    public static final Square h5 = new Square("h5");
-    public static final Square h6 = new Square("h6");
-    public static final Square h7 = new Square("h7");
-    public static final Square h8 = new Square("h8");
+    public static final Square h1 = Square.of("h1");
+    public static final Square h2 = Square.of("h2");
+    public static final Square h3 = Square.of("h3");
+    public static final Square h4 = Square.of("h4");
+    public static final Square h5 = Square.of("h5");
+    public static final Square h6 = Square.of("h6");
+    public static final Square h7 = Square.of("h7");
+    public static final Square h8 = Square.of("h8");
 }
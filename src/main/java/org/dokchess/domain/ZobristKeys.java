@@ -15,12 +15,22 @@
  * You should have received a copy of the GNU General Public License
  * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
  */
-package org.dokchess.opening.polyglot;
+package org.dokchess.domain;
 
-final class FenTools {
+/**
+ * Random numbers for Zobrist hashing of positions. The values and their layout are the ones of
+ * the Polyglot opening book format, so a key calculated with them can be looked up in such a book.
+ * <p/>
+ * A key is the XOR of one number per piece on its square, one per available castling, one for the
+ * en passant file (only if a pawn of the side to move could actually capture en passant) and one if
+ * White is to move.
+ *
+ * @author StefanZ
+ */
+final class ZobristKeys {
 
     //CHECKSTYLE:OFF
-    private static long[] random64 = {0x9D39247E33776D41l,
+    private static final long[] RANDOM64 = {0x9D39247E33776D41l,
             0x2AF7398005AAA5C7l, 0x44DB015024623547l, 0x9C15F73E62A76AE2l,
             0x75834465489C0C89l, 0x3290AC3A203001BFl, 0x0FBBAD1F61042279l,
             0xE83A908FF2FB60CAl, 0x0D7E765D58755C10l, 0x1A083822CEAFE02Dl,
@@ -283,87 +293,89 @@ final class FenTools {
             0x77C621CC9FB3A483l, 0x67A34DAC4356550Bl, 0xF8D626AAAF278509l};
     //CHECKSTYLE:ON
 
-    private FenTools() {
-    }
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
 
-    static long calculateKeyFromFen(String fen) {
+    /**
+     * Polyglot piece kinds ("pPnNbBrRqQkK") by {@link PieceType#ordinal()}.
+     */
+    private static final int[] POLYGLOT_KIND = {10, 8, 6, 4, 2, 0};
 
-        long piece = calculatePieceFromFen(fen);
-        long castle = calculateCastleFromFen(fen);
-        long enpassant = calculateEnpassentFromFen(fen);
-        long turn = calculateTurnFromFen(fen);
-        long key = piece ^ castle ^ enpassant ^ turn;
+    /**
+     * Random numbers for pieces, indexed by piece index * 64 + square index.
+     */
+    private static final long[] PIECE_SQUARE = new long[12 * 64];
 
-        return key;
-    }
+    /**
+     * Combined random numbers for all 16 sets of castling rights, indexed by the castling mask of
+     * {@link MutablePosition} (bit n set if castling type with ordinal n is available).
+     */
+    private static final long[] CASTLING_RIGHTS = new long[16];
 
-    static long calculatePieceFromFen(String fen) {
-        long pieceValue = 0;
-        String[] groups = fen.split(" ");
-        String[] rows = groups[0].split("/");
-        int rowNo = 7;
-        for (String row : rows) {
-            int fileNo = 0;
-            for (int pos = 0; pos < row.length(); ++pos) {
-                char c = row.charAt(pos);
-                if (Character.isDigit(c)) {
-                    fileNo += Integer.parseInt("" + c);
-                } else {
-                    int offsetPiece = 64 * kindOfPiece(c) + 8 * rowNo + fileNo;
-                    pieceValue = pieceValue ^ random64[offsetPiece];
-                    fileNo++;
+    static {
+        for (Colour colour : Colour.values()) {
+            for (PieceType type : PieceType.values()) {
+                int kind = POLYGLOT_KIND[type.ordinal()] + (colour == Colour.WHITE ? 1 : 0);
+                int pieceIndex = MutablePosition.pieceIndex(type, colour);
+                for (int square = 0; square < 64; ++square) {
+                    // Polyglot counts ranks from rank 1, square indices start at rank 8
+                    PIECE_SQUARE[pieceIndex * 64 + square] = RANDOM64[64 * kind + (square ^ 56)];
                 }
             }
-            rowNo--;
-        }
-        return pieceValue;
-
-    }
-
-    static int kindOfPiece(char c) {
-        final String pieces = "pPnNbBrRqQkK";
-        int pos = pieces.indexOf(c);
-        if (pos == -1) {
-            throw new IllegalArgumentException("Unknown piece " + c);
         }
-        return pos;
-    }
-
-    static long calculateCastleFromFen(String fen) {
-        long castle = 0;
-
-        String[] groups = fen.split(" ");
-        String castling = groups[2];
-
-        final char castlingChars[] = {'K', 'Q', 'k', 'q'};
-        for (int i = 0; i < castlingChars.length; ++i) {
-            if (castling.indexOf(castlingChars[i]) > -1) {
-                castle = castle ^ random64[768 + i];
+        for (int mask = 0; mask < CASTLING_RIGHTS.length; ++mask) {
+            for (CastlingType castlingType : CastlingType.values()) {
+                if ((mask & (1 << castlingType.ordinal())) != 0) {
+                    CASTLING_RIGHTS[mask] ^= RANDOM64[CASTLING_OFFSET + castlingType.ordinal()];
+                }
             }
         }
-
-        return castle;
     }
 
-    static long calculateEnpassentFromFen(String fen) {
-        long enpassent = 0;
-
-        // String[] groups = fen.split(" ");
-        // String enp = groups[3];
+    /**
+     * Tool class, no public constructor
+     */
+    private ZobristKeys() {
+    }
 
-        // TODO !!! Missing Implementation
+    /**
+     * Random number for a piece on a square.
+     *
+     * @param pieceIndex  piece index as used for the bitboards of {@link MutablePosition}
+     * @param squareIndex square index, see {@link Square#getIndex()}
+     * @return random number
+     */
+    static long piece(int pieceIndex, int squareIndex) {
+        return PIECE_SQUARE[pieceIndex * 64 + squareIndex];
+    }
 
-        return enpassent;
+    /**
+     * Random number for a set of available castlings.
+     *
+     * @param castlingRights castling mask, bit n set if castling type with ordinal n is available
+     * @return random number, 0 if no castling is available
+     */
+    static long castlingRights(int castlingRights) {
+        return CASTLING_RIGHTS[castlingRights];
     }
 
-    static long calculateTurnFromFen(String fen) {
-        String[] groups = fen.split(" ");
-        String color = groups[1];
+    /**
+     * Random number for an en passant capture possible on the given file.
+     *
+     * @param file file of the en passant square, 0-7
+     * @return random number
+     */
+    static long enPassant(int file) {
+        return RANDOM64[EN_PASSANT_OFFSET + file];
+    }
 
-        if (color.equals("w")) {
-            return random64[780];
-        } else {
-            return 0;
-        }
+    /**
+     * Random number for White to move.
+     *
+     * @return random number
+     */
+    static long whiteToMove() {
+        return RANDOM64[TURN_OFFSET];
     }
 }
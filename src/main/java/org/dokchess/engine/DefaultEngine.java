@@ -21,7 +21,8 @@ package org.dokchess.engine;
 import org.dokchess.domain.Move;
 import org.dokchess.domain.Position;
 import org.dokchess.engine.eval.StandardMaterialEvaluation;
-import org.dokchess.engine.search.MinimaxParallelSearch;
+import org.dokchess.engine.search.IterativeDeepeningSearch;
+import org.dokchess.engine.search.TranspositionTable;
 import org.dokchess.opening.OpeningLibrary;
 import org.dokchess.rules.ChessRules;
 import rx.Observable;
@@ -37,6 +38,16 @@ import rx.subjects.ReplaySubject;
  */
 public class DefaultEngine implements Engine {
 
+    /**
+     * Time budget of the search for one move in milliseconds.
+     */
+    private static final long TIME_PER_MOVE = 5000;
+
+    /**
+     * Size of the transposition table in megabytes.
+     */
+    private static final int HASH_SIZE = 64;
+
     private Position position;
 
     private DetermineMove movePipeline;
@@ -50,12 +61,15 @@ public class DefaultEngine implements Engine {
 
         this.position = new Position();
 
-        MinimaxParallelSearch minimax = new MinimaxParallelSearch();
-        minimax.setDepth(4);
-        minimax.setChessRules(chessRules);
-        minimax.setEvaluation(new StandardMaterialEvaluation());
+        IterativeDeepeningSearch search = new IterativeDeepeningSearch();
+        search.setTimeLimit(TIME_PER_MOVE);
+        search.setTranspositionTable(new TranspositionTable(HASH_SIZE));
+        search.setQuiescenceSearch(true);
+        search.setSeePruning(true);
+        search.setChessRules(chessRules);
+        search.setEvaluation(new StandardMaterialEvaluation());
 
-        FromSearch fromSearch = new FromSearch(minimax);
+        FromSearch fromSearch = new FromSearch(search);
 
         if (openingLibrary != null) {
             this.movePipeline = new FromLibrary(openingLibrary, fromSearch);
@@ -44,5 +44,10 @@ class FromSearch extends DetermineMove {
         super.determineMove(position, observer);
     }
 
+    @Override
+    public void cancelCurrentSearch() {
+        search.cancelSearch();
+        super.cancelCurrentSearch();
+    }
 
 }
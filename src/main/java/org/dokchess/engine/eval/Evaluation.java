@@ -19,6 +19,7 @@
 package org.dokchess.engine.eval;
 
 import org.dokchess.domain.Colour;
+import org.dokchess.domain.MutablePosition;
 import org.dokchess.domain.Position;
 
 /**
@@ -53,4 +54,14 @@ public interface Evaluation {
      * @return evaluation, 0 is balanced, the higher the better for the player
      */
     int evaluatePosition(Position position, Colour pointOfView);
+
+    /**
+     * Returns an evaluation value for a position used by the search, see
+     * {@link #evaluatePosition(Position, Colour)}.
+     *
+     * @param position position to evaluate
+     * @param pointOfView player, from which view to evaluate
+     * @return evaluation, 0 is balanced, the higher the better for the player
+     */
+    int evaluatePosition(MutablePosition position, Colour pointOfView);
 }
@@ -18,7 +18,8 @@
 package org.dokchess.engine.eval;
 
 import org.dokchess.domain.Colour;
-import org.dokchess.domain.Piece;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PieceType;
 import org.dokchess.domain.Position;
 
 /**
@@ -33,32 +34,45 @@ import org.dokchess.domain.Position;
  */
 public class StandardMaterialEvaluation implements Evaluation {
 
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
     @Override
     public int evaluatePosition(Position position, Colour pointOfView) {
         int total = 0;
-
-        for (int rank = 0; rank < 8; ++rank) {
-            for (int file = 0; file < 8; ++file) {
-                Piece piece = position.getPiece(rank, file);
-                if (piece != null) {
-                    int value = pieceValue(piece);
-                    if (piece.getColour() == pointOfView) {
-                        total += value;
-                    } else {
-                        total -= value;
-                    }
-                }
-            }
+        for (PieceType type : PIECE_TYPES) {
+            total += balance(type, position.getPieces(type, pointOfView),
+                    position.getPieces(type, pointOfView.otherColour()));
         }
+        return total;
+    }
 
+    @Override
+    public int evaluatePosition(MutablePosition position, Colour pointOfView) {
+        int total = 0;
+        for (PieceType type : PIECE_TYPES) {
+            total += balance(type, position.getPieces(type, pointOfView),
+                    position.getPieces(type, pointOfView.otherColour()));
+        }
         return total;
     }
 
     /**
-     * Material value of the given piece.
+     * Material difference of one piece type.
+     *
+     * @param type  piece type
+     * @param own   own pieces of that type as a bitboard
+     * @param other opponent pieces of that type as a bitboard
+     * @return value of the own pieces minus value of the opponent pieces
+     */
+    private int balance(PieceType type, long own, long other) {
+        return pieceValue(type) * (Long.bitCount(own) - Long.bitCount(other));
+    }
+
+    /**
+     * Material value of a piece of the given type, independent of its colour.
      */
-    protected int pieceValue(final Piece piece) {
-        switch (piece.getType()) {
+    protected int pieceValue(final PieceType type) {
+        switch (type) {
             case PAWN:
                 return 1;
             case KNIGHT:
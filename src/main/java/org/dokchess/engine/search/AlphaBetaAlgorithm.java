@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.PieceType;
+import org.dokchess.domain.Position;
+import org.dokchess.engine.eval.Evaluation;
+import org.dokchess.rules.StaticExchange;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Alpha-beta search in negamax form: each node is scored from the point of view of its side to move, and
+ * the score of a child is the negated score for the opponent. Subtrees which cannot change the result are cut
+ * off. Scores are fail-soft, i.e. a node may return a value outside the window (alpha, beta) as a bound.
+ * <p/>
+ * With the same depth, evaluation and move order, the best move and its score are the same as those of
+ * {@link MinimaxAlgorithm}; only fewer nodes are visited. Checkmate scores depend on the ply of the mate,
+ * as with minimax. The evaluation must be symmetric, i.e. the value for one side is the negated value for
+ * the other.
+ * <p/>
+ * Optionally, results are stored in a {@link TranspositionTable}. A stored score with enough depth ends the
+ * search of a node, a stored best move is tried first. Because a position may be reached by paths with
+ * different history (repetitions), results with a table may differ slightly from those of minimax.
+ * <p/>
+ * Below the root, quiet moves are ordered by killer moves and history values, see {@link MoveOrdering}, with
+ * tables of their own for each search thread.
+ * <p/>
+ * Optionally, the positions at the maximum depth are not evaluated directly, but after a quiescence search
+ * which plays out the captures (see {@link #quiescence(MutablePosition, int, int, int, int)}). This changes
+ * the results compared to minimax, so it is switched off by default.
+ */
+public class AlphaBetaAlgorithm extends MinimaxAlgorithm {
+
+    /**
+     * Bound of the search window. {@link Evaluation#WORST} cannot be negated.
+     */
+    protected static final int INFINITY = Evaluation.BEST;
+
+    /**
+     * Piece values by piece type ordinal for delta pruning, in pawn units as in the material evaluation.
+     */
+    private static final int[] PIECE_VALUES = {0, 9, 5, 3, 3, 1};
+
+    /**
+     * Captures which cannot raise the score to alpha even with this margin are skipped (delta pruning).
+     */
+    private static final int DELTA_MARGIN = 2;
+
+    private boolean quiescenceSearch;
+
+    private boolean quiescenceChecks;
+
+    private boolean seePruning;
+
+    private TranspositionTable transpositionTable;
+
+    /** Move ordering tables of all search threads, for the statistics. */
+    private final List<MoveOrdering> allMoveOrderings = new CopyOnWriteArrayList<>();
+
+    /** Move ordering tables per thread. */
+    private final ThreadLocal<MoveOrdering> moveOrderings = new ThreadLocal<MoveOrdering>() {
+        @Override
+        protected MoveOrdering initialValue() {
+            MoveOrdering ordering = new MoveOrdering();
+            allMoveOrderings.add(ordering);
+            return ordering;
+        }
+    };
+
+    /**
+     * Sets the table for results of searched positions, which may be shared with other searches.
+     *
+     * @param transpositionTable table, or {@code null} to search without one
+     */
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Switches the quiescence search at the maximum depth on or off.
+     *
+     * @param quiescenceSearch true to play out captures before evaluating a position
+     */
+    public void setQuiescenceSearch(boolean quiescenceSearch) {
+        this.quiescenceSearch = quiescenceSearch;
+    }
+
+    /**
+     * Lets the first ply of the quiescence search include quiet moves which give check.
+     *
+     * @param quiescenceChecks true to search checks as well
+     */
+    public void setQuiescenceChecks(boolean quiescenceChecks) {
+        this.quiescenceChecks = quiescenceChecks;
+    }
+
+    /**
+     * Lets the quiescence search skip captures which lose material according to {@link StaticExchange}.
+     *
+     * @param seePruning true to skip losing captures
+     */
+    public void setSeePruning(boolean seePruning) {
+        this.seePruning = seePruning;
+    }
+
+    /**
+     * Returns the share of beta cutoffs caused by the first move searched in a node, over all threads and
+     * searches so far. A measure for the quality of the move order; approximate while searches are running.
+     *
+     * @return value between 0 and 1, 0 if there were no cutoffs
+     */
+    public double getFirstMoveCutoffRate() {
+        long cutoffs = 0;
+        long firstMoveCutoffs = 0;
+        for (MoveOrdering ordering : allMoveOrderings) {
+            cutoffs += ordering.getCutoffs();
+            firstMoveCutoffs += ordering.getFirstMoveCutoffs();
+        }
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    @Override
+    public RatedMove determineBestRatedMove(Position position) {
+
+        MutablePosition board = searchBoard(position);
+        long key = board.getHashKey();
+        int hashMove = PackedMove.NO_MOVE;
+        if (transpositionTable != null) {
+            hashMove = TranspositionTable.getMove(transpositionTable.probe(key));
+        }
+        StagedMoves moves = stagedMoves(0, board, hashMove);
+
+        int alpha = -INFINITY;
+        int bestValue = -INFINITY;
+        int bestMove = PackedMove.NO_MOVE;
+
+        for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+            board.makeMove(move);
+            int value = -negamax(board, 1, -INFINITY, -alpha);
+            board.unmakeMove();
+
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = move;
+                alpha = Math.max(alpha, value);
+            }
+        }
+
+        if (transpositionTable != null && bestMove != PackedMove.NO_MOVE && !isSearchAborted()) {
+            transpositionTable.store(key, bestMove, getDepth(), TranspositionTable.EXACT, bestValue, 0);
+        }
+
+        return bestMove == PackedMove.NO_MOVE ? null : new RatedMove(PackedMove.toMove(bestMove), bestValue);
+    }
+
+    /**
+     * Exact score with a full window, converted to the point of view of the root player.
+     */
+    @Override
+    protected int evaluatePositionRecursive(MutablePosition position, int currentDepth,
+                                            Colour rootPlayerColour) {
+        int score = negamax(position, currentDepth, -INFINITY, INFINITY);
+        return position.getToMove() == rootPlayerColour ? score : -score;
+    }
+
+    /**
+     * Alpha-beta search of a node.
+     *
+     * @param position position to evaluate, unchanged when the method returns
+     * @param ply      1-based ply counter from the root
+     * @param alpha    score the side to move is already sure of
+     * @param beta     score the opponent is already sure of, higher scores are not reached in the game
+     * @return score from the point of view of the side to move; at most alpha if no move reaches alpha
+     * (upper bound), at least beta if a move reaches beta (lower bound), exact otherwise
+     */
+    protected int negamax(MutablePosition position, int ply, int alpha, int beta) {
+
+        if (isSearchAborted()) {
+            return Evaluation.BALANCED;
+        }
+
+        // Draw by repetition or fifty-move rule, no need to search on
+        if (position.isRepetition()) {
+            return Evaluation.BALANCED;
+        }
+        if (position.getHalfmoveClock() >= 100) {
+            return fiftyMoveRule(position, ply);
+        }
+
+        if (ply == getDepth()) {
+            if (quiescenceSearch) {
+                return quiescence(position, ply, 0, alpha, beta);
+            }
+            return evaluation.evaluatePosition(position, position.getToMove());
+        }
+
+        // stored result of an earlier search of the position
+        long key = position.getHashKey();
+        int hashMove = PackedMove.NO_MOVE;
+        if (transpositionTable != null) {
+            long entry = transpositionTable.probe(key);
+            if (entry != 0) {
+                hashMove = TranspositionTable.getMove(entry);
+                if (TranspositionTable.getDepth(entry) >= getDepth() - ply) {
+                    int score = TranspositionTable.getScore(entry, ply);
+                    int bound = TranspositionTable.getBound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                            || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+                        return score;
+                    }
+                }
+            }
+        }
+
+        MoveOrdering ordering = moveOrdering();
+        StagedMoves legalMoves = stagedMoves(ply, position, hashMove, ordering);
+        int move = legalMoves.next();
+        if (move == PackedMove.NO_MOVE) {
+            if (!chessRules.isCheck(position, position.getToMove())) {
+                return Evaluation.BALANCED;
+            }
+            // mated, shorter mates score higher for the winner
+            return -(CHECKMATE_SCORE - ply);
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = PackedMove.NO_MOVE;
+        for (int moveNumber = 0; move != PackedMove.NO_MOVE; move = legalMoves.next(), ++moveNumber) {
+            position.makeMove(move);
+            int score = -negamax(position, ply + 1, -beta, -alpha);
+            position.unmakeMove();
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    if (alpha >= beta) {
+                        ordering.cutoff(ply, move, getDepth() - ply, moveNumber);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (transpositionTable != null && !isSearchAborted()) {
+            int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                    : bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            transpositionTable.store(key, bestMove, getDepth() - ply, bound, bestScore, ply);
+        }
+        return bestScore;
+    }
+
+    /**
+     * Quiescence search: only captures are searched, until the position is quiet. The side to move may also
+     * "stand pat", i.e. keep the evaluation of the position instead of capturing. Captures which cannot reach
+     * alpha even if the captured piece is won for free are skipped (delta pruning), and with SEE pruning also
+     * those which lose material in the exchange. A side in check searches all its moves instead and may be
+     * mated.
+     *
+     * @param position position to evaluate, unchanged when the method returns
+     * @param ply      1-based ply counter from the root
+     * @param qply     ply counter from the start of the quiescence search
+     * @param alpha    score the side to move is already sure of
+     * @param beta     score the opponent is already sure of
+     * @return fail-soft score from the point of view of the side to move
+     */
+    protected int quiescence(MutablePosition position, int ply, int qply, int alpha, int beta) {
+
+        if (isSearchAborted()) {
+            return Evaluation.BALANCED;
+        }
+        if (position.isRepetition()) {
+            return Evaluation.BALANCED;
+        }
+        if (position.getHalfmoveClock() >= 100) {
+            return fiftyMoveRule(position, ply);
+        }
+
+        // in check all moves, otherwise captures only
+        boolean inCheck = chessRules.isCheck(position, position.getToMove());
+        StagedMoves moves = stagedMoves(ply, position);
+        int standPat = 0;
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            standPat = evaluation.evaluatePosition(position, position.getToMove());
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            bestScore = standPat;
+            moves.resetCaptures(position, quiescenceChecks && qply == 0);
+        }
+
+        int move = moves.next();
+        if (inCheck && move == PackedMove.NO_MOVE) {
+            return -(CHECKMATE_SCORE - ply);
+        }
+        for (; move != PackedMove.NO_MOVE; move = moves.next()) {
+            if (!inCheck && PackedMove.isCapture(move)) {
+                if (standPat + gain(move) + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+                if (seePruning && StaticExchange.see(position, move) < 0) {
+                    continue;
+                }
+            }
+
+            position.makeMove(move);
+            int score = -quiescence(position, ply + 1, qply + 1, -beta, -alpha);
+            position.unmakeMove();
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Score of a position in which the fifty-move rule applies: a draw, unless the move which reached the
+     * hundredth half move has mated.
+     */
+    private int fiftyMoveRule(MutablePosition position, int ply) {
+        if (chessRules.isCheck(position, position.getToMove()) && !chessRules.hasLegalMove(position)) {
+            return -(CHECKMATE_SCORE - ply);
+        }
+        return Evaluation.BALANCED;
+    }
+
+    /**
+     * Material won by a capture, including the promotion.
+     */
+    private static int gain(int move) {
+        int gain = PIECE_VALUES[PackedMove.getCapturedPiece(move) % 6];
+        if (PackedMove.isPromotion(move)) {
+            gain += PIECE_VALUES[PackedMove.getPromotion(move).ordinal()] - PIECE_VALUES[PieceType.PAWN.ordinal()];
+        }
+        return gain;
+    }
+
+    /**
+     * Called at each node and before a result is stored. A search with limits (time, nodes) returns true when
+     * they are exceeded; then all nodes return immediately and the result of the search is meaningless.
+     *
+     * @return true if the current search is to be stopped
+     */
+    protected boolean isSearchAborted() {
+        return false;
+    }
+
+    /**
+     * Returns the move ordering tables of the current thread.
+     */
+    protected MoveOrdering moveOrdering() {
+        return moveOrderings.get();
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.Position;
+import rx.Observer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Iterative deepening: searches with {@link AlphaBetaAlgorithm} to depth 1, 2, 3 and so on, until the time or
+ * node budget of the move is used up. The best move of each completed iteration is published to the observer;
+ * an iteration which runs out of budget is abandoned, and the observer is completed with the move of the
+ * previous one. Depth 1 is always completed, so there is a move as long as the position has legal moves.
+ * <p/>
+ * Cancelling (or closing) ends the search like an exhausted budget: the observer is completed, and the last
+ * move published is the best one found so far.
+ * <p/>
+ * A new iteration is not started when more than half of the time is used, because it would most likely not
+ * be completed. The search runs in a background thread, one search at a time.
+ */
+public class IterativeDeepeningSearch extends AlphaBetaAlgorithm implements Search {
+
+    /**
+     * Nodes between two looks at the clock.
+     */
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    private long timeLimit = 5000;
+
+    private long nodeLimit = Long.MAX_VALUE;
+
+    private int maxDepth = 64;
+
+    /**
+     * Most recently started search, changed by the caller's thread.
+     */
+    private volatile SearchTask currentSearch;
+
+    // state of the running iteration, only used by the search thread
+
+    private SearchTask runningSearch;
+
+    private long deadline;
+
+    private long nodes;
+
+    private long quiescenceNodes;
+
+    private boolean aborted;
+
+    // node counts of the most recently completed iteration, read by other threads
+
+    private volatile long lastNodes;
+
+    private volatile long lastQuiescenceNodes;
+
+    /**
+     * Sets the time budget per move.
+     *
+     * @param timeLimit time in milliseconds
+     */
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Sets the node budget per move, unlimited by default.
+     *
+     * @param nodeLimit maximum number of nodes visited in all iterations, quiescence nodes included
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Sets the depth of the last iteration.
+     *
+     * @param maxDepth search depth in plies
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns the number of main search nodes visited up to the most recently completed iteration.
+     *
+     * @return nodes of the main search, without quiescence nodes
+     */
+    public long getNodes() {
+        return lastNodes;
+    }
+
+    /**
+     * Returns the number of quiescence nodes visited up to the most recently completed iteration.
+     *
+     * @return nodes of the quiescence search
+     */
+    public long getQuiescenceNodes() {
+        return lastQuiescenceNodes;
+    }
+
+    @Override
+    public void searchMove(Position position, Observer<Move> observer) {
+        cancelSearch();
+        SearchTask task = new SearchTask(position, observer);
+        currentSearch = task;
+        executorService.execute(task);
+    }
+
+    @Override
+    public void cancelSearch() {
+        SearchTask task = currentSearch;
+        if (task != null) {
+            task.cancelled = true;
+            currentSearch = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelSearch();
+        executorService.shutdown();
+    }
+
+    @Override
+    protected int negamax(MutablePosition position, int ply, int alpha, int beta) {
+        ++nodes;
+        return super.negamax(position, ply, alpha, beta);
+    }
+
+    @Override
+    protected int quiescence(MutablePosition position, int ply, int qply, int alpha, int beta) {
+        ++quiescenceNodes;
+        return super.quiescence(position, ply, qply, alpha, beta);
+    }
+
+    @Override
+    protected boolean isSearchAborted() {
+        if (aborted) {
+            return true;
+        }
+        if (getDepth() == 1) {
+            // completed in any case, it provides the move
+            return false;
+        }
+        if (runningSearch.cancelled) {
+            aborted = true;
+        } else {
+            long visited = nodes + quiescenceNodes;
+            aborted = visited >= nodeLimit
+                    || visited % CLOCK_CHECK_INTERVAL == 0 && System.currentTimeMillis() >= deadline;
+        }
+        return aborted;
+    }
+
+    /**
+     * One search, i.e. all iterations for a position.
+     */
+    class SearchTask implements Runnable {
+
+        private final Position position;
+
+        private final Observer<Move> observer;
+
+        private volatile boolean cancelled;
+
+        SearchTask(Position position, Observer<Move> observer) {
+            this.position = position;
+            this.observer = observer;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            runningSearch = this;
+            deadline = start + timeLimit;
+            nodes = 0;
+            quiescenceNodes = 0;
+            lastNodes = 0;
+            lastQuiescenceNodes = 0;
+            aborted = false;
+            if (getTranspositionTable() != null) {
+                getTranspositionTable().newSearch();
+            }
+            moveOrdering().newSearch();
+
+            for (int depth = 1; depth <= maxDepth && (depth == 1 || !cancelled); ++depth) {
+                setDepth(depth);
+                RatedMove best = determineBestRatedMove(position);
+                if (aborted || best == null) {
+                    break;
+                }
+                lastNodes = nodes;
+                lastQuiescenceNodes = quiescenceNodes;
+                observer.onNext(best.getMove());
+
+                if (Math.abs(best.getRating()) > CHECKMATE_SCORE - depth
+                        || System.currentTimeMillis() - start > timeLimit / 2) {
+                    // a mate is found, or the next iteration would not be completed
+                    break;
+                }
+            }
+
+            observer.onCompleted();
+        }
+    }
+}
@@ -20,15 +20,21 @@ package org.dokchess.engine.search;
 
 import org.dokchess.domain.Colour;
 import org.dokchess.domain.Move;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
 import org.dokchess.domain.Position;
 import org.dokchess.engine.eval.Evaluation;
 import org.dokchess.rules.ChessRules;
 
-import java.util.Collection;
+import java.util.Arrays;
 
 /**
  * Depth-limited minimax over legal moves, using a pluggable {@link Evaluation}
- * at the leaf nodes. Checkmate and stalemate are handled explicitly.
+ * at the leaf nodes. Checkmate and stalemate are handled explicitly, a repeated
+ * position or the fifty-move rule count as a draw. The tree is
+ * walked with make / unmake on one {@link MutablePosition} per thread, moves are
+ * generated in stages by one {@link StagedMoves} per ply and converted into {@link Move}
+ * objects only for the result.
  */
 public class MinimaxAlgorithm {
 
@@ -37,10 +43,26 @@ public class MinimaxAlgorithm {
     protected Evaluation evaluation;
 
     /** Base magnitude used when scoring checkmate (prefers shorter mates via depth term). */
-    private static final int CHECKMATE_SCORE = Evaluation.BEST / 2;
+    protected static final int CHECKMATE_SCORE = Evaluation.BEST / 2;
 
     private int depth;
 
+    /** Search board per thread, reused for all searches of that thread. */
+    private final ThreadLocal<MutablePosition> searchBoards = new ThreadLocal<MutablePosition>() {
+        @Override
+        protected MutablePosition initialValue() {
+            return new MutablePosition(new Position());
+        }
+    };
+
+    /** Move generators per thread, indexed by ply. */
+    private final ThreadLocal<StagedMoves[]> stagedMoves = new ThreadLocal<StagedMoves[]>() {
+        @Override
+        protected StagedMoves[] initialValue() {
+            return new StagedMoves[0];
+        }
+    };
+
     /**
      * Sets the evaluation function used at the maximum search depth.
      */
@@ -66,6 +88,15 @@ public class MinimaxAlgorithm {
         this.depth = depth;
     }
 
+    /**
+     * Returns the maximum search depth in plies.
+     *
+     * @return search depth in plies
+     */
+    public int getDepth() {
+        return depth;
+    }
+
     /**
      * Returns the best move for the side to move in {@code position} using minimax
      * at the configured depth. Blocks until finished; deterministic for a given
@@ -75,17 +106,30 @@ public class MinimaxAlgorithm {
      * @return best move according to minimax, or {@code null} if there are no moves
      */
     public Move determineBestMove(Position position) {
+        RatedMove best = determineBestRatedMove(position);
+        return best == null ? null : best.getMove();
+    }
 
-        Colour playerColour = position.getToMove();
-        Collection<Move> moves = chessRules.getLegalMoves(position);
+    /**
+     * Returns the best move together with its score from the point of view of the side to move, see
+     * {@link #determineBestMove(Position)}.
+     *
+     * @param position root position to search
+     * @return best move and its score, or {@code null} if there are no moves
+     */
+    public RatedMove determineBestRatedMove(Position position) {
 
-        int bestValue = Evaluation.WORST;
-        Move bestMove = null;
+        MutablePosition board = searchBoard(position);
+        Colour playerColour = board.getToMove();
+        StagedMoves moves = stagedMoves(0, board);
 
-        for (Move move : moves) {
-            Position newPos = position.performMove(move);
+        int bestValue = Evaluation.WORST;
+        int bestMove = PackedMove.NO_MOVE;
 
-            int value = evaluatePositionRecursive(newPos, playerColour);
+        for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+            board.makeMove(move);
+            int value = evaluatePositionRecursive(board, playerColour);
+            board.unmakeMove();
 
             if (value > bestValue) {
                 bestValue = value;
@@ -93,31 +137,45 @@ public class MinimaxAlgorithm {
             }
         }
 
-        return bestMove;
+        return bestMove == PackedMove.NO_MOVE ? null : new RatedMove(PackedMove.toMove(bestMove), bestValue);
     }
 
     /**
      * Recursive evaluation from ply depth 1 for the given root player colour.
      */
-    protected int evaluatePositionRecursive(Position position, Colour rootPlayerColour) {
+    protected int evaluatePositionRecursive(MutablePosition position, Colour rootPlayerColour) {
         return evaluatePositionRecursive(position, 1, rootPlayerColour);
     }
 
     /**
      * Minimax with alternating min/max layers at odd/even ply depths.
      *
-     * @param position     position to evaluate
+     * @param position     position to evaluate, unchanged when the method returns
      * @param currentDepth 1-based ply counter from the root
      * @param rootPlayerColour side to maximise at the root (engine's player)
      */
-    protected int evaluatePositionRecursive(Position position, int currentDepth,
+    protected int evaluatePositionRecursive(MutablePosition position, int currentDepth,
                                             Colour rootPlayerColour) {
 
+        // Draw by repetition or fifty-move rule, no need to search on
+        if (position.isRepetition()) {
+            return Evaluation.BALANCED;
+        }
+        if (position.getHalfmoveClock() >= 100) {
+            // unless the move which reached the hundredth half move has mated
+            if (!chessRules.isCheck(position, position.getToMove()) || chessRules.hasLegalMove(position)) {
+                return Evaluation.BALANCED;
+            }
+            return position.getToMove() == rootPlayerColour
+                    ? -(CHECKMATE_SCORE - currentDepth) : CHECKMATE_SCORE - currentDepth;
+        }
+
         if (currentDepth == depth) {
             return evaluation.evaluatePosition(position, rootPlayerColour);
         }
-        Collection<Move> legalMoves = chessRules.getLegalMoves(position);
-        if (legalMoves.isEmpty()) {
+        StagedMoves legalMoves = stagedMoves(currentDepth, position);
+        int move = legalMoves.next();
+        if (move == PackedMove.NO_MOVE) {
 
             // Stalemate
             if (!chessRules
@@ -135,10 +193,11 @@ public class MinimaxAlgorithm {
         if (currentDepth % 2 == 0) {
             // Max layer
             int max = Evaluation.WORST;
-            for (Move move : legalMoves) {
-                Position childPosition = position.performMove(move);
-                int score = evaluatePositionRecursive(childPosition,
+            for (; move != PackedMove.NO_MOVE; move = legalMoves.next()) {
+                position.makeMove(move);
+                int score = evaluatePositionRecursive(position,
                         currentDepth + 1, rootPlayerColour);
+                position.unmakeMove();
                 if (score > max) {
                     max = score;
                 }
@@ -147,10 +206,11 @@ public class MinimaxAlgorithm {
         }
         // Min layer
         int min = Evaluation.BEST;
-        for (Move move : legalMoves) {
-            Position childPosition = position.performMove(move);
-            int score = evaluatePositionRecursive(childPosition,
+        for (; move != PackedMove.NO_MOVE; move = legalMoves.next()) {
+            position.makeMove(move);
+            int score = evaluatePositionRecursive(position,
                     currentDepth + 1, rootPlayerColour);
+            position.unmakeMove();
             if (score < min) {
                 min = score;
             }
@@ -158,4 +218,46 @@ public class MinimaxAlgorithm {
         return min;
     }
 
+    /**
+     * Returns the move generator of the current thread for the given ply, started with the moves of the
+     * position.
+     */
+    protected StagedMoves stagedMoves(int ply, MutablePosition position) {
+        return stagedMoves(ply, position, PackedMove.NO_MOVE);
+    }
+
+    /**
+     * Returns the move generator of the current thread for the given ply, started with the moves of the
+     * position and the given move first.
+     */
+    protected StagedMoves stagedMoves(int ply, MutablePosition position, int hashMove) {
+        return stagedMoves(ply, position, hashMove, null);
+    }
+
+    /**
+     * Returns the move generator of the current thread for the given ply, started with the moves of the
+     * position, the given move first and quiet moves ordered with the given tables.
+     */
+    protected StagedMoves stagedMoves(int ply, MutablePosition position, int hashMove, MoveOrdering ordering) {
+        StagedMoves[] generators = stagedMoves.get();
+        if (ply >= generators.length) {
+            generators = Arrays.copyOf(generators, ply + 1);
+            stagedMoves.set(generators);
+        }
+        if (generators[ply] == null) {
+            generators[ply] = new StagedMoves(chessRules);
+        }
+        generators[ply].reset(position, hashMove, ordering, ply);
+        return generators[ply];
+    }
+
+    /**
+     * Returns the search board of the current thread, set up with the given position.
+     */
+    protected MutablePosition searchBoard(Position position) {
+        MutablePosition board = searchBoards.get();
+        board.setPosition(position);
+        return board;
+    }
+
 }
@@ -20,6 +20,7 @@ package org.dokchess.engine.search;
 
 import org.dokchess.domain.Colour;
 import org.dokchess.domain.Move;
+import org.dokchess.domain.MutablePosition;
 import org.dokchess.domain.Position;
 import rx.Observer;
 import rx.subjects.ReplaySubject;
@@ -29,11 +30,11 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
- * Parallel minimax at the root: each legal move is evaluated in its own task on a
- * thread pool. Results are streamed as {@link RatedMove} instances; the best move
- * is forwarded to the given {@link Observer}.
+ * Parallel search at the root: each legal move is evaluated in its own task on a
+ * thread pool, with alpha-beta below the root (see {@link AlphaBetaAlgorithm}). Results are
+ * streamed as {@link RatedMove} instances; the best move is forwarded to the given {@link Observer}.
  */
-public class MinimaxParallelSearch extends MinimaxAlgorithm implements Search {
+public class MinimaxParallelSearch extends AlphaBetaAlgorithm implements Search {
 
     private ExecutorService executorService;
 
@@ -102,9 +103,11 @@ public class MinimaxParallelSearch extends MinimaxAlgorithm implements Search {
         @Override
         public void run() {
             if (!computationFinished) {
-                Colour rootPlayerColour = position.getToMove();
-                Position positionAfterMove = position.performMove(move);
-                int score = evaluatePositionRecursive(positionAfterMove, rootPlayerColour);
+                MutablePosition board = searchBoard(position);
+                Colour rootPlayerColour = board.getToMove();
+                board.makeMove(move);
+                int score = evaluatePositionRecursive(board, rootPlayerColour);
+                board.unmakeMove();
                 searchResults.onNext(new RatedMove(move, score));
             }
         }
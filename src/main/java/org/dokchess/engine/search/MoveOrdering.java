@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Tables of one search thread for the order of quiet moves: two killer moves per ply (quiet moves which
+ * caused a cutoff in a sibling node) and the history heuristic (how often a move from one square to another
+ * caused a cutoff anywhere in the tree, weighted by the remaining depth). Used by {@link StagedMoves}.
+ * <p/>
+ * Also counts the cutoffs, and how many of them were caused by the first move searched. The higher that
+ * share, the better the move order.
+ */
+public final class MoveOrdering {
+
+    /**
+     * Highest ply with killer moves.
+     */
+    public static final int MAX_PLY = 128;
+
+    /**
+     * History values are halved when one of them reaches this limit, which keeps recent cutoffs important.
+     */
+    private static final int MAX_HISTORY = 1 << 20;
+
+    private final int[] killers = new int[2 * MAX_PLY];
+
+    /**
+     * History values indexed by source square * 64 + target square ("butterfly" table).
+     */
+    private final int[] history = new int[64 * 64];
+
+    private long cutoffs;
+
+    private long firstMoveCutoffs;
+
+    /**
+     * Records a move which caused a beta cutoff.
+     *
+     * @param ply        distance of the node from the root
+     * @param move       packed move which caused the cutoff
+     * @param depth      remaining depth of the node
+     * @param moveNumber 0-based position of the move in the order in which the moves were searched
+     */
+    public void cutoff(int ply, int move, int depth, int moveNumber) {
+        ++cutoffs;
+        if (moveNumber == 0) {
+            ++firstMoveCutoffs;
+        }
+        if (PackedMove.isCapture(move) || PackedMove.isPromotion(move)) {
+            // ordered by their own criteria
+            return;
+        }
+
+        if (ply < MAX_PLY && killers[2 * ply] != move) {
+            killers[2 * ply + 1] = killers[2 * ply];
+            killers[2 * ply] = move;
+        }
+
+        int index = historyIndex(move);
+        history[index] += depth * depth;
+        if (history[index] >= MAX_HISTORY) {
+            for (int i = 0; i < history.length; ++i) {
+                history[i] /= 2;
+            }
+        }
+    }
+
+    /**
+     * Returns a killer move.
+     *
+     * @param ply   distance of the node from the root
+     * @param index 0 for the most recent killer move, 1 for the one before
+     * @return packed move, or {@link PackedMove#NO_MOVE}
+     */
+    public int getKiller(int ply, int index) {
+        return ply < MAX_PLY ? killers[2 * ply + index] : PackedMove.NO_MOVE;
+    }
+
+    /**
+     * Returns the history value of a move, higher values are tried first.
+     *
+     * @param move packed move
+     * @return history value, 0 if the move never caused a cutoff
+     */
+    public int getHistory(int move) {
+        return history[historyIndex(move)];
+    }
+
+    /**
+     * Prepares the tables for a new search: killer moves of the previous position are removed, history values
+     * are reduced.
+     */
+    public void newSearch() {
+        Arrays.fill(killers, PackedMove.NO_MOVE);
+        for (int i = 0; i < history.length; ++i) {
+            history[i] /= 8;
+        }
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    private static int historyIndex(int move) {
+        return PackedMove.getFrom(move) * 64 + PackedMove.getTo(move);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.rules.CheckInfo;
+import org.dokchess.rules.ChessRules;
+
+/**
+ * Legal moves of a position in stages, generated only when the search asks for them: the hash move first,
+ * then captures (most valuable victim first, among those the least valuable attacker), then the killer moves,
+ * promotions and finally the quiet moves, ordered by their history values. Killer moves and history values
+ * come from a {@link MoveOrdering}; without one, the quiet moves are returned in the order of generation.
+ * A node which is cut off after the first moves does not generate the quiet moves at all.
+ * <p/>
+ * For the quiescence search, {@link #resetCaptures(MutablePosition, boolean)} returns only the captures and,
+ * optionally, the quiet moves which give check.
+ * <p/>
+ * Usage: {@link #reset(MutablePosition, int)}, then {@link #next()} until it returns
+ * {@link PackedMove#NO_MOVE}. Moves may be made and taken back on the position between the calls, but the
+ * position has to be the same at each call. The search keeps one instance per ply.
+ */
+public final class StagedMoves {
+
+    private static final int HASH_MOVE = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLER_MOVES = 3;
+    private static final int GENERATE_NON_CAPTURES = 4;
+    private static final int PROMOTIONS = 5;
+    private static final int QUIET_MOVES = 6;
+    private static final int QUIET_CHECKS = 7;
+    private static final int DONE = 8;
+
+    /**
+     * Value of a captured piece by piece type ordinal (king, queen, rook, bishop, knight, pawn).
+     */
+    private static final int[] VICTIM_VALUES = {0, 9, 5, 3, 3, 1};
+
+    /**
+     * Value of a capturing piece by piece type ordinal, the king captures last.
+     */
+    private static final int[] ATTACKER_VALUES = {10, 9, 5, 3, 3, 1};
+
+    private final ChessRules chessRules;
+
+    private final MoveList captures = new MoveList();
+
+    private final MoveList nonCaptures = new MoveList();
+
+    private MutablePosition position;
+
+    private int hashMove;
+
+    private MoveOrdering ordering;
+
+    private int killer1;
+
+    private int killer2;
+
+    private boolean capturesOnly;
+
+    private boolean checks;
+
+    /**
+     * Created on first use, then reset for each position.
+     */
+    private CheckInfo checkInfo;
+
+    private int stage = DONE;
+
+    private int index;
+
+    public StagedMoves(ChessRules chessRules) {
+        this.chessRules = chessRules;
+    }
+
+    /**
+     * Starts with the moves of a position.
+     *
+     * @param position position to generate the moves for
+     * @param hashMove move to try first, e.g. the best move of a previous search, or {@link PackedMove#NO_MOVE}.
+     *                 Moves which are not legal in the position are ignored.
+     */
+    public void reset(MutablePosition position, int hashMove) {
+        reset(position, hashMove, null, 0);
+    }
+
+    /**
+     * Starts with the moves of a position, with killer moves and history values for the quiet moves.
+     *
+     * @param position position to generate the moves for
+     * @param hashMove move to try first, or {@link PackedMove#NO_MOVE}, see {@link #reset(MutablePosition, int)}
+     * @param ordering killer moves and history values of the search thread, or {@code null}
+     * @param ply      distance of the position from the root, to find the killer moves
+     */
+    public void reset(MutablePosition position, int hashMove, MoveOrdering ordering, int ply) {
+        this.position = position;
+        this.hashMove = hashMove;
+        this.ordering = ordering;
+        if (ordering != null) {
+            killer1 = ordering.getKiller(ply, 0);
+            killer2 = ordering.getKiller(ply, 1);
+        } else {
+            killer1 = PackedMove.NO_MOVE;
+            killer2 = PackedMove.NO_MOVE;
+        }
+        this.capturesOnly = false;
+        this.stage = HASH_MOVE;
+    }
+
+    /**
+     * Starts with the captures of a position (including en passant and captures with promotion), most valuable
+     * victim first. Promotions without capture are not returned.
+     *
+     * @param position position to generate the moves for
+     * @param checks   true to return the quiet moves which give check after the captures
+     */
+    public void resetCaptures(MutablePosition position, boolean checks) {
+        reset(position, PackedMove.NO_MOVE);
+        this.capturesOnly = true;
+        this.checks = checks;
+    }
+
+    /**
+     * Returns the next legal move.
+     *
+     * @return packed move, or {@link PackedMove#NO_MOVE} if there are no more moves
+     */
+    public int next() {
+        while (true) {
+            switch (stage) {
+                case HASH_MOVE:
+                    stage = GENERATE_CAPTURES;
+                    if (hashMove != PackedMove.NO_MOVE) {
+                        if (chessRules.isLegal(position, hashMove)) {
+                            return hashMove;
+                        }
+                        hashMove = PackedMove.NO_MOVE;
+                    }
+                    break;
+
+                case GENERATE_CAPTURES:
+                    captures.clear();
+                    chessRules.getLegalCaptures(position, captures);
+                    sortByVictimAndAttacker(captures);
+                    index = 0;
+                    stage = CAPTURES;
+                    break;
+
+                case CAPTURES:
+                    while (index < captures.size()) {
+                        int move = captures.get(index++);
+                        if (move != hashMove) {
+                            return move;
+                        }
+                    }
+                    index = 0;
+                    stage = KILLER_MOVES;
+                    break;
+
+                case KILLER_MOVES:
+                    // killer moves of sibling nodes, if they are quiet and legal here as well
+                    while (index < 2) {
+                        int move = index++ == 0 ? killer1 : killer2;
+                        if (move != PackedMove.NO_MOVE && move != hashMove && chessRules.isLegal(position, move)) {
+                            return move;
+                        }
+                    }
+                    stage = capturesOnly && !checks ? DONE : GENERATE_NON_CAPTURES;
+                    break;
+
+                case GENERATE_NON_CAPTURES:
+                    nonCaptures.clear();
+                    chessRules.getLegalNonCaptures(position, nonCaptures);
+                    if (ordering != null) {
+                        sortByHistory(nonCaptures, ordering);
+                    }
+                    index = 0;
+                    if (capturesOnly) {
+                        if (checkInfo == null) {
+                            checkInfo = new CheckInfo(position);
+                        } else {
+                            checkInfo.reset(position);
+                        }
+                        stage = QUIET_CHECKS;
+                    } else {
+                        stage = PROMOTIONS;
+                    }
+                    break;
+
+                case PROMOTIONS:
+                    while (index < nonCaptures.size()) {
+                        int move = nonCaptures.get(index++);
+                        if (PackedMove.isPromotion(move) && move != hashMove) {
+                            return move;
+                        }
+                    }
+                    index = 0;
+                    stage = QUIET_MOVES;
+                    break;
+
+                case QUIET_MOVES:
+                    while (index < nonCaptures.size()) {
+                        int move = nonCaptures.get(index++);
+                        if (!PackedMove.isPromotion(move) && move != hashMove && move != killer1
+                                && move != killer2) {
+                            return move;
+                        }
+                    }
+                    stage = DONE;
+                    break;
+
+                case QUIET_CHECKS:
+                    while (index < nonCaptures.size()) {
+                        int move = nonCaptures.get(index++);
+                        if (!PackedMove.isPromotion(move) && checkInfo.givesCheck(move)) {
+                            return move;
+                        }
+                    }
+                    stage = DONE;
+                    break;
+
+                default:
+                    return PackedMove.NO_MOVE;
+            }
+        }
+    }
+
+    /**
+     * Sorts captures by the value of the captured piece, highest first, and captures of the same piece by the
+     * value of the capturing piece, lowest first (MVV-LVA). Insertion sort, the lists are short and the order
+     * of equal captures is kept.
+     */
+    private static void sortByVictimAndAttacker(MoveList moves) {
+        for (int i = 1; i < moves.size(); ++i) {
+            int move = moves.get(i);
+            int value = captureValue(move);
+            int j = i - 1;
+            while (j >= 0 && captureValue(moves.get(j)) < value) {
+                moves.set(j + 1, moves.get(j));
+                --j;
+            }
+            moves.set(j + 1, move);
+        }
+    }
+
+    /**
+     * Sorts moves by their history values, highest first, see {@link #sortByVictimAndAttacker(MoveList)}.
+     */
+    private static void sortByHistory(MoveList moves, MoveOrdering ordering) {
+        for (int i = 1; i < moves.size(); ++i) {
+            int move = moves.get(i);
+            int value = ordering.getHistory(move);
+            int j = i - 1;
+            while (j >= 0 && ordering.getHistory(moves.get(j)) < value) {
+                moves.set(j + 1, moves.get(j));
+                --j;
+            }
+            moves.set(j + 1, move);
+        }
+    }
+
+    private static int captureValue(int move) {
+        return VICTIM_VALUES[PackedMove.getCapturedPiece(move) % 6] * 16
+                - ATTACKER_VALUES[PackedMove.getPiece(move) % 6];
+    }
+}
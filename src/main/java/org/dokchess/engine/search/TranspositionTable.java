@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * Results of searched positions, keyed by the hash key of the position: the score with its bound type, the
+ * remaining depth of the search and the best move. A position reached again by another move order
+ * (transposition) is not searched again, and the best move of an earlier search is tried first.
+ * <p/>
+ * The entries are stored in one long array, two longs per entry: the hash key XOR the data, and the data.
+ * Several threads may use the table at the same time without locks. An entry torn by concurrent writes
+ * does not match its key any more and is ignored like a miss. Two entries form a bucket; a new entry
+ * replaces the entry for the same position, otherwise the one left by an earlier search or, within the same
+ * search, the one with less depth.
+ * <p/>
+ * Data layout:
+ * <pre>
+ *  0-26  best move, see {@link PackedMove}
+ * 27-28  bound type
+ * 29-35  remaining depth
+ * 36-39  age, i.e. number of the search modulo 16
+ * 40-63  score
+ * </pre>
+ * Mate scores are stored relative to the position, not to the root of the search, because the position
+ * may be reached at another ply later.
+ */
+public final class TranspositionTable {
+
+    /**
+     * Bound type: the score is exact.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * Bound type: the score is at least the stored value (a move reached beta).
+     */
+    public static final int LOWER_BOUND = 2;
+
+    /**
+     * Bound type: the score is at most the stored value (no move reached alpha).
+     */
+    public static final int UPPER_BOUND = 3;
+
+    private static final long MOVE_MASK = (1L << 27) - 1;
+    private static final int BOUND_SHIFT = 27;
+    private static final int DEPTH_SHIFT = 29;
+    private static final int MAX_DEPTH = 127;
+    private static final int AGE_SHIFT = 36;
+    private static final int AGE_MASK = 15;
+    private static final int SCORE_SHIFT = 40;
+
+    /**
+     * Largest score stored as it is; mate scores are encoded above it.
+     */
+    private static final int MAX_SCORE = (1 << 23) - 1;
+
+    /**
+     * Scores this close to the checkmate score are mate scores.
+     */
+    private static final int MATE_RANGE = 1024;
+
+    private static final int ENTRIES_PER_BUCKET = 2;
+
+    /**
+     * Number of entries examined for the fill rate.
+     */
+    private static final int FILL_RATE_SAMPLE = 1000;
+
+    private final long[] entries;
+
+    private final int bucketMask;
+
+    private volatile int age;
+
+    // statistics, not synchronized, so only approximate if several threads use the table
+
+    private long probes;
+
+    private long hits;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param sizeInMegabytes approximate size, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int sizeInMegabytes) {
+        long buckets = Long.highestOneBit(Math.max(1L, sizeInMegabytes * 1024L * 1024L / 32));
+        buckets = Math.min(buckets, 1L << 26);
+        entries = new long[(int) (buckets * ENTRIES_PER_BUCKET * 2)];
+        bucketMask = (int) (buckets - 1);
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key hash key of the position
+     * @return data of the entry, to be read with the static methods of this class, or 0 if not in the table
+     */
+    public long probe(long key) {
+        ++probes;
+        int index = bucketIndex(key);
+        for (int i = 0; i < ENTRIES_PER_BUCKET; ++i, index += 2) {
+            long data = entries[index + 1];
+            if (data != 0 && (entries[index] ^ data) == key) {
+                ++hits;
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search.
+     *
+     * @param key   hash key of the position
+     * @param move  best move, or {@link PackedMove#NO_MOVE} to keep the move of an entry for the same position
+     * @param depth remaining depth of the search
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     * @param score score from the point of view of the side to move
+     * @param ply   distance of the position from the root, to store mate scores relative to the position
+     */
+    public void store(long key, int move, int depth, int bound, int score, int ply) {
+        int currentAge = age;
+        int bucket = bucketIndex(key);
+        int index = bucket;
+        int lowestPriority = Integer.MAX_VALUE;
+        for (int i = 0, slot = bucket; i < ENTRIES_PER_BUCKET; ++i, slot += 2) {
+            long data = entries[slot + 1];
+            if (data != 0 && (entries[slot] ^ data) == key) {
+                if (move == PackedMove.NO_MOVE) {
+                    move = getMove(data);
+                }
+                index = slot;
+                break;
+            }
+            // empty entries first, then those of earlier searches, then those with less depth
+            int priority = data == 0 ? -1 : getDepth(data) + (getAge(data) == currentAge ? MAX_DEPTH + 1 : 0);
+            if (priority < lowestPriority) {
+                lowestPriority = priority;
+                index = slot;
+            }
+        }
+
+        long data = move & MOVE_MASK
+                | (long) bound << BOUND_SHIFT
+                | (long) Math.min(Math.max(depth, 0), MAX_DEPTH) << DEPTH_SHIFT
+                | (long) currentAge << AGE_SHIFT
+                | (long) encodeScore(score, ply) << SCORE_SHIFT;
+        entries[index] = key ^ data;
+        entries[index + 1] = data;
+    }
+
+    /**
+     * Starts a new search. Entries of earlier searches are kept, but replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Removes all entries and resets the statistics.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0L);
+        probes = 0;
+        hits = 0;
+    }
+
+    public static int getMove(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /**
+     * Returns the stored score.
+     *
+     * @param data data of an entry
+     * @param ply  distance of the position from the root of the current search
+     * @return score from the point of view of the side to move, mate scores relative to the root
+     */
+    public static int getScore(long data, int ply) {
+        int score = (int) (data >> SCORE_SHIFT);
+        if (score > MAX_SCORE - MATE_RANGE) {
+            return MinimaxAlgorithm.CHECKMATE_SCORE - (MAX_SCORE - score) - ply;
+        }
+        if (score < -(MAX_SCORE - MATE_RANGE)) {
+            return -MinimaxAlgorithm.CHECKMATE_SCORE + (MAX_SCORE + score) + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Returns the share of hits among all lookups.
+     *
+     * @return hits divided by lookups, 0 if there were none
+     */
+    public double getHitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    /**
+     * Returns the share of entries used by the current search, estimated from the first entries of the table.
+     *
+     * @return value between 0 (empty) and 1 (full)
+     */
+    public double getFillRate() {
+        int sample = Math.min(FILL_RATE_SAMPLE, entries.length / 2);
+        int used = 0;
+        for (int i = 0; i < sample; ++i) {
+            long data = entries[2 * i + 1];
+            if (data != 0 && getAge(data) == age) {
+                ++used;
+            }
+        }
+        return (double) used / sample;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    private static int getAge(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /**
+     * Mate scores become a distance to mate from the position, encoded close to the largest score.
+     */
+    private static int encodeScore(int score, int ply) {
+        if (score > MinimaxAlgorithm.CHECKMATE_SCORE - MATE_RANGE) {
+            return MAX_SCORE - (MinimaxAlgorithm.CHECKMATE_SCORE - score - ply);
+        }
+        if (score < -(MinimaxAlgorithm.CHECKMATE_SCORE - MATE_RANGE)) {
+            return -MAX_SCORE + (MinimaxAlgorithm.CHECKMATE_SCORE + score - ply);
+        }
+        return Math.max(-(MAX_SCORE - MATE_RANGE), Math.min(MAX_SCORE - MATE_RANGE, score));
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key ^ key >>> 32) & bucketMask) * ENTRIES_PER_BUCKET * 2;
+    }
+}
@@ -68,8 +68,7 @@ public class PolyglotOpeningBook implements OpeningLibrary {
     @Override
     public Move lookUpMove(Position position) {
 
-        String fen = position.toString();
-        List<BookEntry> matches = findEntriesByFen(fen);
+        List<BookEntry> matches = findEntriesByKey(position.getHashKey());
 
         if (matches != null && !matches.isEmpty()) {
 
@@ -81,8 +80,8 @@ public class PolyglotOpeningBook implements OpeningLibrary {
 
             BookEntry chosen = matches.get(0);
 
-            Square fromSquare = new Square(chosen.getMoveFrom());
-            Square toSquare = new Square(chosen.getMoveTo());
+            Square fromSquare = Square.of(chosen.getMoveFrom());
+            Square toSquare = Square.of(chosen.getMoveTo());
             Piece piece = position.getPiece(fromSquare);
             boolean capture = position.getPiece(toSquare) != null;
 
@@ -113,7 +112,7 @@ public class PolyglotOpeningBook implements OpeningLibrary {
     }
 
     List<BookEntry> findEntriesByFen(String fen) {
-        long key = FenTools.calculateKeyFromFen(fen);
+        long key = new Position(fen).getHashKey();
         return findEntriesByKey(key);
     }
 
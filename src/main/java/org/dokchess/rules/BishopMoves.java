@@ -17,11 +17,8 @@
  */
 package org.dokchess.rules;
 
-import org.dokchess.domain.Position;
-import org.dokchess.domain.Square;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 
 /**
  * Moves of the bishop.
@@ -29,15 +26,7 @@ import java.util.List;
 class BishopMoves extends ComplexMovement {
 
     @Override
-    protected List<Square> getReachableSquares(Position position, Square from) {
-
-        List<Square> squares = new ArrayList<Square>();
-
-        addReachableSquaresInDirection(position, from, 1, 1, squares);
-        addReachableSquaresInDirection(position, from, 1, -1, squares);
-        addReachableSquaresInDirection(position, from, -1, 1, squares);
-        addReachableSquaresInDirection(position, from, -1, -1, squares);
-
-        return squares;
+    void addMoveCandidates(int from, MutablePosition position, long targets, MoveList target) {
+        addMoves(position, from, SlidingAttacks.bishop(from, position.getOccupiedSquares()) & targets, target);
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PieceType;
+import org.dokchess.domain.Position;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chess rules which remember the legal moves of recently examined positions, e.g. of the position in which
+ * the user interface validates a move and the engine starts its search. The other methods are passed to the
+ * decorated rules; the packed variants used inside the search are not cached.
+ * <p/>
+ * Entries are found by the hash key of the position and compared with the position itself, so a collision
+ * of hash keys never returns the moves of another position. When the cache is full, the least recently
+ * used entry is removed. The cache may be used by several threads.
+ * <p/>
+ * Usage, e.g. in {@link org.dokchess.Main}:
+ * <pre>
+ * ChessRules chessRules = new CachingChessRules(new DefaultChessRules(), 1024);
+ * </pre>
+ * {@link #getHits()} and {@link #getMisses()} tell whether the cache pays off.
+ */
+public class CachingChessRules implements ChessRules {
+
+    private final ChessRules rules;
+
+    private final Map<Long, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong collisions = new AtomicLong();
+
+    /**
+     * Creates the cache.
+     *
+     * @param rules    rules to compute legal moves which are not in the cache
+     * @param capacity maximum number of positions in the cache
+     */
+    public CachingChessRules(ChessRules rules, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.rules = rules;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the legal moves from the cache, or computes and stores them.
+     *
+     * @param position game situation to examine
+     * @return unmodifiable collection of the legal moves
+     */
+    @Override
+    public Collection<Move> getLegalMoves(Position position) {
+        Long key = position.getHashKey();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (samePosition(entry.position, position)) {
+                    hits.incrementAndGet();
+                    return entry.moves;
+                }
+                collisions.incrementAndGet();
+            }
+        }
+
+        // computed outside of the lock, other threads may use the cache in the meantime
+        misses.incrementAndGet();
+        Collection<Move> moves = Collections.unmodifiableCollection(
+                new ArrayList<Move>(rules.getLegalMoves(position)));
+        synchronized (entries) {
+            entries.put(key, new Entry(position, moves));
+        }
+        return moves;
+    }
+
+    @Override
+    public void getLegalMoves(MutablePosition position, MoveList target) {
+        rules.getLegalMoves(position, target);
+    }
+
+    @Override
+    public void getLegalCaptures(MutablePosition position, MoveList target) {
+        rules.getLegalCaptures(position, target);
+    }
+
+    @Override
+    public void getLegalNonCaptures(MutablePosition position, MoveList target) {
+        rules.getLegalNonCaptures(position, target);
+    }
+
+    @Override
+    public boolean isLegal(MutablePosition position, int move) {
+        return rules.isLegal(position, move);
+    }
+
+    @Override
+    public boolean hasLegalMove(Position position) {
+        return !getLegalMoves(position).isEmpty();
+    }
+
+    @Override
+    public boolean hasLegalMove(MutablePosition position) {
+        return rules.hasLegalMove(position);
+    }
+
+    @Override
+    public boolean isCheck(Position position, Colour colour) {
+        return rules.isCheck(position, colour);
+    }
+
+    @Override
+    public boolean isCheck(MutablePosition position, Colour colour) {
+        return rules.isCheck(position, colour);
+    }
+
+    @Override
+    public boolean givesCheck(Position position, Move move) {
+        return rules.givesCheck(position, move);
+    }
+
+    @Override
+    public boolean givesCheck(MutablePosition position, int move) {
+        return rules.givesCheck(position, move);
+    }
+
+    @Override
+    public boolean isCheckmate(Position position) {
+        return isCheck(position, position.getToMove()) && getLegalMoves(position).isEmpty();
+    }
+
+    @Override
+    public boolean isStalemate(Position position) {
+        return !isCheck(position, position.getToMove()) && getLegalMoves(position).isEmpty();
+    }
+
+    @Override
+    public Position getStartingPosition() {
+        return rules.getStartingPosition();
+    }
+
+    /**
+     * Returns how often legal moves were taken from the cache.
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns how often legal moves had to be computed, including hash key collisions.
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns how often an entry with the same hash key belonged to a different position.
+     *
+     * @return number of hash key collisions
+     */
+    public long getCollisions() {
+        return collisions.get();
+    }
+
+    /**
+     * Returns the share of requests answered from the cache.
+     *
+     * @return hits divided by all requests, 0 if there were none
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Compares everything the legal moves depend on: pieces, side to move, castling rights and en passant.
+     */
+    private static boolean samePosition(Position a, Position b) {
+        if (a.getToMove() != b.getToMove()
+                || !Objects.equals(a.getEnPassantSquare(), b.getEnPassantSquare())
+                || !a.getCastlingsAvailable().equals(b.getCastlingsAvailable())) {
+            return false;
+        }
+        for (Colour colour : Colour.values()) {
+            for (PieceType type : PieceType.values()) {
+                if (a.getPieces(type, colour) != b.getPieces(type, colour)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A position (immutable) and its legal moves.
+     */
+    private static final class Entry {
+
+        private final Position position;
+
+        private final Collection<Move> moves;
+
+        private Entry(Position position, Collection<Move> moves) {
+            this.position = position;
+            this.moves = moves;
+        }
+    }
+}
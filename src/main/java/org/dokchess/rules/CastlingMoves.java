@@ -20,8 +20,6 @@ package org.dokchess.rules;
 
 import org.dokchess.domain.*;
 
-import java.util.List;
-
 import static org.dokchess.domain.Squares.*;
 
 /**
@@ -29,55 +27,60 @@ import static org.dokchess.domain.Squares.*;
  */
 class CastlingMoves extends Movement {
 
-    private static final Piece WHITE_KING = new Piece(PieceType.KING, Colour.WHITE);
-    private static final Piece BLACK_KING = new Piece(PieceType.KING, Colour.BLACK);
+    private static final int WHITE_KING = MutablePosition.pieceIndex(PieceType.KING, Colour.WHITE);
+    private static final int BLACK_KING = MutablePosition.pieceIndex(PieceType.KING, Colour.BLACK);
 
     @Override
-    public void addMoveCandidates(Square from, Position position,
-                                  List<Move> target) {
+    public void addMoveCandidates(int from, MutablePosition position, long targets,
+                                  MoveList target) {
 
         switch (position.getToMove()) {
             case WHITE:
-                if (position.getCastlingsAvailable().contains(CastlingType.WHITE_KINGSIDE)) {
+                if (position.castlingAllowed(CastlingType.WHITE_KINGSIDE) && isTarget(targets, g1)) {
                     if (areAllSquaresEmpty(position, f1, g1)
                             && noneOfSquaresAreAttacked(position, Colour.BLACK, e1,
                             f1, g1)) {
-                        Move kingsideCastle = new Move(WHITE_KING, e1, g1);
-                        target.add(kingsideCastle);
+                        target.add(castling(WHITE_KING, e1, g1));
                     }
                 }
-                if (position.getCastlingsAvailable().contains(CastlingType.WHITE_QUEENSIDE)) {
+                if (position.castlingAllowed(CastlingType.WHITE_QUEENSIDE) && isTarget(targets, c1)) {
                     if (areAllSquaresEmpty(position, b1, c1, d1)
                             && noneOfSquaresAreAttacked(position, Colour.BLACK, e1,
                             d1, c1)) {
-                        Move queensideCastle = new Move(WHITE_KING, e1, c1);
-                        target.add(queensideCastle);
+                        target.add(castling(WHITE_KING, e1, c1));
                     }
                 }
                 break;
 
             case BLACK:
-                if (position.getCastlingsAvailable().contains(CastlingType.BLACK_KINGSIDE)) {
+                if (position.castlingAllowed(CastlingType.BLACK_KINGSIDE) && isTarget(targets, g8)) {
                     if (areAllSquaresEmpty(position, f8, g8)
                             && noneOfSquaresAreAttacked(position, Colour.WHITE, e8, f8,
                             g8)) {
-                        Move kingsideCastle = new Move(BLACK_KING, e8, g8);
-                        target.add(kingsideCastle);
+                        target.add(castling(BLACK_KING, e8, g8));
                     }
                 }
-                if (position.getCastlingsAvailable().contains(CastlingType.BLACK_QUEENSIDE)) {
+                if (position.castlingAllowed(CastlingType.BLACK_QUEENSIDE) && isTarget(targets, c8)) {
                     if (areAllSquaresEmpty(position, b8, c8, d8)
                             && noneOfSquaresAreAttacked(position, Colour.WHITE, e8, d8,
                             c8)) {
-                        Move queensideCastle = new Move(BLACK_KING, e8, c8);
-                        target.add(queensideCastle);
+                        target.add(castling(BLACK_KING, e8, c8));
                     }
                 }
                 break;
         }
     }
 
-    protected boolean noneOfSquaresAreAttacked(Position position,
+    private static int castling(int king, Square from, Square to) {
+        return PackedMove.create(from.getIndex(), to.getIndex(), king, MutablePosition.NO_PIECE,
+                PackedMove.CASTLING);
+    }
+
+    private static boolean isTarget(long targets, Square square) {
+        return (targets & (1L << square.getIndex())) != 0;
+    }
+
+    protected boolean noneOfSquaresAreAttacked(MutablePosition position,
                                                Colour attackingColour, Square... squares) {
         for (Square square : squares) {
             if (Tools.isSquareAttacked(position, square, attackingColour)) {
@@ -87,7 +90,7 @@ class CastlingMoves extends Movement {
         return true;
     }
 
-    protected boolean areAllSquaresEmpty(Position position, Square... squares) {
+    protected boolean areAllSquaresEmpty(MutablePosition position, Square... squares) {
         for (Square square : squares) {
             if (position.getPiece(square) != null) {
                 return false;
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.PieceType;
+
+import static org.dokchess.domain.PieceType.*;
+
+/**
+ * Tells whether a move gives check without making it. Computed once per position for the side to move:
+ * <ul>
+ * <li>direct check squares: for each piece type, the squares from which such a piece would attack the
+ * opponent king</li>
+ * <li>discovered check candidates: own pieces which stand alone between an own rook, bishop or queen and the
+ * opponent king; moving one of them off that line uncovers the attack</li>
+ * </ul>
+ * Castling (the rook gives check), promotion (the new piece gives check) and en passant (two pawns leave their
+ * squares) are examined separately.
+ * <p/>
+ * An instance is only valid as long as the position is not changed; {@link #reset(MutablePosition)} reuses it
+ * for another position.
+ */
+public final class CheckInfo {
+
+    private MutablePosition position;
+
+    /**
+     * Hash key of the position at the last reset.
+     */
+    private long hashKey;
+
+    private Colour toMove;
+
+    private int kingSquare;
+
+    /**
+     * Direct check squares by piece type ordinal (king, queen, rook, bishop, knight, pawn).
+     */
+    private final long[] checkSquares = new long[6];
+
+    private long discoveredCheckCandidates;
+
+    /**
+     * Precomputes the check squares of the side to move.
+     *
+     * @param position position to examine, must not be changed while this object is used
+     */
+    public CheckInfo(MutablePosition position) {
+        reset(position);
+    }
+
+    /**
+     * Precomputes the check squares for another position, instead of creating a new instance.
+     *
+     * @param position position to examine, must not be changed while this object is used
+     */
+    public void reset(MutablePosition position) {
+        this.position = position;
+        this.hashKey = position.getHashKey();
+        this.toMove = position.getToMove();
+        Colour opponent = toMove.otherColour();
+        this.kingSquare = position.getKingSquare(opponent);
+
+        if (kingSquare == MutablePosition.NO_PIECE) {
+            discoveredCheckCandidates = 0;
+            return;
+        }
+
+        long occupied = position.getOccupiedSquares();
+        checkSquares[ROOK.ordinal()] = SlidingAttacks.rook(kingSquare, occupied);
+        checkSquares[BISHOP.ordinal()] = SlidingAttacks.bishop(kingSquare, occupied);
+        checkSquares[QUEEN.ordinal()] = checkSquares[ROOK.ordinal()] | checkSquares[BISHOP.ordinal()];
+        checkSquares[KNIGHT.ordinal()] = LeaperAttacks.knight(kingSquare);
+        // an own pawn attacks the king from the squares an opponent pawn on the king's square would attack
+        checkSquares[PAWN.ordinal()] = LeaperAttacks.pawn(kingSquare, opponent);
+
+        discoveredCheckCandidates = Tools.discoveredCheckCandidates(position, kingSquare, toMove);
+    }
+
+    /**
+     * Returns whether the precomputed squares still belong to the given board, i.e. it is the board of the last
+     * reset and is in the same position again (same hash key).
+     *
+     * @param position board to test
+     * @return true if no reset is needed
+     */
+    boolean isValidFor(MutablePosition position) {
+        return this.position == position && hashKey == position.getHashKey();
+    }
+
+    /**
+     * Returns whether the given move of the side to move checks the opponent king.
+     *
+     * @param move legal packed move in the position, see {@link PackedMove}
+     * @return true if the opponent king is attacked after the move
+     */
+    public boolean givesCheck(int move) {
+        if (kingSquare == MutablePosition.NO_PIECE) {
+            return false;
+        }
+
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        long toBit = 1L << to;
+
+        // direct check, the promotion piece instead of the pawn
+        PieceType promotion = PackedMove.getPromotion(move);
+        if (promotion == null) {
+            if ((checkSquares[PackedMove.getPiece(move) % 6] & toBit) != 0) {
+                return true;
+            }
+        } else if ((attacks(promotion, to, position.getOccupiedSquares() & ~(1L << from)) & (1L << kingSquare))
+                != 0) {
+            return true;
+        }
+
+        // discovered check, unless the piece stays on the line to the king
+        if ((discoveredCheckCandidates & (1L << from)) != 0 && (Rays.line(kingSquare, from) & toBit) == 0) {
+            return true;
+        }
+
+        if (PackedMove.isCastling(move)) {
+            // the rook jumps over the king to the square next to it
+            int rookTo = (from + to) / 2;
+            int rookFrom = to > from ? to + 1 : to - 2;
+            long occupied = position.getOccupiedSquares() & ~(1L << from) & ~(1L << rookFrom) | toBit
+                    | 1L << rookTo;
+            return (SlidingAttacks.rook(rookTo, occupied) & (1L << kingSquare)) != 0;
+        }
+
+        if (PackedMove.isEnPassant(move)) {
+            // the captured pawn may uncover an attack as well, which is not covered by the candidates
+            int capturedSquare = from / 8 * 8 + to % 8;
+            long occupied = position.getOccupiedSquares() & ~(1L << from) & ~(1L << capturedSquare) | toBit;
+            long queens = position.getPieces(QUEEN, toMove);
+            return (SlidingAttacks.rook(kingSquare, occupied) & (queens | position.getPieces(ROOK, toMove))
+                    | SlidingAttacks.bishop(kingSquare, occupied) & (queens | position.getPieces(BISHOP, toMove)))
+                    != 0;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether the given piece is a discovered check candidate, i.e. whether moving it off the line to
+     * the opponent king uncovers an attack of a rook, bishop or queen.
+     *
+     * @param square index of the square of the piece
+     * @return true for a discovered check candidate
+     */
+    public boolean isDiscoveredCheckCandidate(int square) {
+        return (discoveredCheckCandidates & (1L << square)) != 0;
+    }
+
+    private static long attacks(PieceType type, int square, long occupied) {
+        switch (type) {
+            case QUEEN:
+                return SlidingAttacks.queen(square, occupied);
+            case ROOK:
+                return SlidingAttacks.rook(square, occupied);
+            case BISHOP:
+                return SlidingAttacks.bishop(square, occupied);
+            case KNIGHT:
+                return LeaperAttacks.knight(square);
+            default:
+                return 0;
+        }
+    }
+}
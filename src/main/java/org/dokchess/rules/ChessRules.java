@@ -19,6 +19,8 @@ package org.dokchess.rules;
 
 import org.dokchess.domain.Colour;
 import org.dokchess.domain.Move;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 import org.dokchess.domain.Position;
 
 import java.util.Collection;
@@ -47,6 +49,63 @@ public interface ChessRules {
      */
     Collection<Move> getLegalMoves(Position position);
 
+    /**
+     * Computes all legal moves for a position used by the search, see {@link #getLegalMoves(Position)}.
+     * The moves are appended to the given list in packed form, see {@link org.dokchess.domain.PackedMove}.
+     * Moves may be made and taken back on the board during the computation; when the method returns,
+     * the board is in its original state.
+     *
+     * @param position game situation to examine
+     * @param target   list to receive the legal moves, nothing is added in case of a mate or stalemate.
+     */
+    void getLegalMoves(MutablePosition position, MoveList target);
+
+    /**
+     * Computes the legal captures (including en passant and captures with promotion), see
+     * {@link #getLegalMoves(MutablePosition, MoveList)}.
+     *
+     * @param position game situation to examine
+     * @param target   list to receive the legal captures
+     */
+    void getLegalCaptures(MutablePosition position, MoveList target);
+
+    /**
+     * Computes the legal moves which do not capture (including castling and promotions without capture),
+     * see {@link #getLegalMoves(MutablePosition, MoveList)}. Together with
+     * {@link #getLegalCaptures(MutablePosition, MoveList)}, these are all legal moves.
+     *
+     * @param position game situation to examine
+     * @param target   list to receive the legal moves
+     */
+    void getLegalNonCaptures(MutablePosition position, MoveList target);
+
+    /**
+     * Checks whether a packed move is legal in the position, e.g. a move taken from a hash table which may
+     * belong to another position.
+     *
+     * @param position game situation to examine
+     * @param move     packed move, see {@link org.dokchess.domain.PackedMove}
+     * @return true if the move is one of the legal moves of the position
+     */
+    boolean isLegal(MutablePosition position, int move);
+
+    /**
+     * Checks whether the side to move has at least one legal move. Cheaper than computing all legal moves,
+     * because the search stops at the first one.
+     *
+     * @param position game situation to examine
+     * @return false in case of a mate or stalemate
+     */
+    boolean hasLegalMove(Position position);
+
+    /**
+     * Checks whether the side to move has at least one legal move, see {@link #hasLegalMove(Position)}.
+     *
+     * @param position game situation to examine, unchanged when the method returns
+     * @return false in case of a mate or stalemate
+     */
+    boolean hasLegalMove(MutablePosition position);
+
     /**
      * Checks whether the king of the given colour is attacked by the opponent.
      *
@@ -56,6 +115,36 @@ public interface ChessRules {
      */
     boolean isCheck(Position position, Colour colour);
 
+    /**
+     * Checks whether the king of the given colour is attacked by the opponent, see
+     * {@link #isCheck(Position, Colour)}.
+     *
+     * @param position game situation to examine
+     * @param colour   side of the king which is tested for an attack
+     * @return true in case of check
+     */
+    boolean isCheck(MutablePosition position, Colour colour);
+
+    /**
+     * Checks whether a legal move checks the opponent king, without performing it. Castling gives check if
+     * the rook does, a promotion if the new piece does, and discovered checks count as well.
+     *
+     * @param position game situation before the move
+     * @param move     legal move of the side to move
+     * @return true if the move gives check
+     */
+    boolean givesCheck(Position position, Move move);
+
+    /**
+     * Checks whether a legal packed move checks the opponent king, see {@link #givesCheck(Position, Move)}.
+     * To test many moves of the same position, use {@link CheckInfo} directly.
+     *
+     * @param position game situation before the move, not changed
+     * @param move     legal packed move of the side to move, see {@link org.dokchess.domain.PackedMove}
+     * @return true if the move gives check
+     */
+    boolean givesCheck(MutablePosition position, int move);
+
     /**
      * Checks whether the given position is a mate. I.e. the king of the current player
      * is under attack, and no legal move changes this. The player to move has lost the game.
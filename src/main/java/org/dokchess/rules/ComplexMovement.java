@@ -18,31 +18,44 @@
 
 package org.dokchess.rules;
 
-import org.dokchess.domain.Move;
-import org.dokchess.domain.Piece;
-import org.dokchess.domain.Position;
-import org.dokchess.domain.Square;
-
-import java.util.List;
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
 
 /**
- * Abstract base class for complex piece-movement patterns in chess;
- * provides a default implementation of {@link #addMoveCandidates(Square, Position, java.util.List)}.
+ * Abstract base class for complex piece-movement patterns in chess, i.e. pieces which move in
+ * steps or along lines. Provides the method to add the corresponding move candidates.
  */
 public abstract class ComplexMovement extends Movement {
 
-    @Override
-    void addMoveCandidates(Square from, Position position, List<Move> target) {
-        Piece ownPiece = position.getPiece(from);
-
-        List<Square> reachable = getReachableSquares(position, from);
-        for (Square to : reachable) {
-            Move m = new Move(ownPiece, from, to, !position.isFree(to));
-            target.add(m);
+    /**
+     * Appends a move for every target square which is not occupied by an own piece. Used with the attack sets
+     * of {@link SlidingAttacks} and {@link LeaperAttacks}.
+     *
+     * @param position position to examine
+     * @param from     index of the source square
+     * @param targets  target squares as a bitboard, e.g. all attacked squares
+     * @param target   list to receive the moves
+     */
+    protected final void addMoves(final MutablePosition position, final int from, final long targets,
+                                  final MoveList target) {
+
+        int piece = position.getPieceIndex(from);
+        long squares = targets & ~ownPieces(position, from);
+        while (squares != 0) {
+            int to = Long.numberOfTrailingZeros(squares);
+            squares &= squares - 1;
+            // empty square or capture
+            target.add(PackedMove.create(from, to, piece, position.getPieceIndex(to)));
         }
     }
 
-    protected abstract List<Square> getReachableSquares(Position position,
-                                                        Square from);
-
+    /**
+     * Squares occupied by pieces of the same colour as the piece on the given square.
+     */
+    private static long ownPieces(MutablePosition position, int square) {
+        long white = position.getOccupiedSquares(Colour.WHITE);
+        return (white & (1L << square)) != 0 ? white : position.getOccupiedSquares(Colour.BLACK);
+    }
 }
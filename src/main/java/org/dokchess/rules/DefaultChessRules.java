@@ -41,61 +41,342 @@ public class DefaultChessRules implements ChessRules {
 
     private CastlingMoves castlingMoves = new CastlingMoves();
 
+    /**
+     * Board per thread, used to answer questions about immutable positions with make / unmake.
+     */
+    private final ThreadLocal<MutablePosition> scratchBoards = new ThreadLocal<MutablePosition>() {
+        @Override
+        protected MutablePosition initialValue() {
+            return new MutablePosition(new Position());
+        }
+    };
+
+    /**
+     * Move list per thread for {@link #hasLegalMove(MutablePosition)} and {@link #isLegal(MutablePosition, int)}.
+     */
+    private final ThreadLocal<MoveList> scratchMoveLists = new ThreadLocal<MoveList>() {
+        @Override
+        protected MoveList initialValue() {
+            return new MoveList();
+        }
+    };
+
+    /**
+     * Check squares per thread for {@link #givesCheck(MutablePosition, int)}.
+     */
+    private final ThreadLocal<CheckInfo> checkInfos = new ThreadLocal<CheckInfo>() {
+        @Override
+        protected CheckInfo initialValue() {
+            return new CheckInfo(new MutablePosition(new Position()));
+        }
+    };
+
     @Override
     public Collection<Move> getLegalMoves(Position position) {
+        MoveList moves = new MoveList();
+        getLegalMoves(scratchBoard(position), moves);
+        return moves.toMoves();
+    }
 
-        List<Move> moves = new ArrayList<Move>();
+    @Override
+    public void getLegalMoves(MutablePosition position, MoveList target) {
         Colour sideToMove = position.getToMove();
+        addLegalMoves(position, position.getOccupiedSquares(sideToMove), Movement.ALL_SQUARES, target);
+    }
 
-        Set<Square> ownSquares = position.squaresWithColour(sideToMove);
-        for (Square square : ownSquares) {
+    @Override
+    public void getLegalCaptures(MutablePosition position, MoveList target) {
+        Colour sideToMove = position.getToMove();
+        addLegalMoves(position, position.getOccupiedSquares(sideToMove),
+                position.getOccupiedSquares(sideToMove.otherColour()), target);
+    }
+
+    @Override
+    public void getLegalNonCaptures(MutablePosition position, MoveList target) {
+        Colour sideToMove = position.getToMove();
+        addLegalMoves(position, position.getOccupiedSquares(sideToMove), ~position.getOccupiedSquares(), target);
+    }
+
+    /**
+     * Tests the move directly instead of generating the moves of the piece: first whether the piece could make
+     * the move at all, then, like {@link #removeIllegalMoves(MutablePosition, int, MoveList, long, long)},
+     * whether the own king would be left in check. Only castling is generated, it is rare as a hash or killer
+     * move.
+     */
+    @Override
+    public boolean isLegal(MutablePosition position, int move) {
+        Colour sideToMove = position.getToMove();
+        int from = PackedMove.getFrom(move);
+        if ((position.getOccupiedSquares(sideToMove) & (1L << from)) == 0
+                || position.getPieceIndex(from) != PackedMove.getPiece(move)) {
+            return false;
+        }
+
+        MoveList moves = scratchMoveLists.get();
+        moves.clear();
+        if (PackedMove.isCastling(move)) {
+            // the generator verifies the squares crossed, including the king's square
+            castlingMoves.addMoveCandidates(from, position, 1L << PackedMove.getTo(move), moves);
+            return moves.size() == 1 && moves.get(0) == move;
+        }
+        if (!isMoveCandidate(position, move)) {
+            return false;
+        }
+
+        int kingSquare = position.getKingSquare(sideToMove);
+        if (kingSquare == MutablePosition.NO_PIECE) {
+            return true;
+        }
+        long checkers = Tools.attackersTo(position, kingSquare, sideToMove.otherColour());
+        if (from != kingSquare && (checkers & (checkers - 1)) != 0) {
+            // double check, the king has to move
+            return false;
+        }
+        moves.add(move);
+        removeIllegalMoves(position, 0, moves, checkMask(kingSquare, checkers),
+                Tools.pinnedPieces(position, kingSquare, sideToMove));
+        return !moves.isEmpty();
+    }
+
+    /**
+     * Tests whether a move (other than castling) of the piece on its source square is pseudo legal, i.e.
+     * whether the generator would create it, see {@link #addMoveCandidates(MutablePosition, long, long,
+     * MoveList)}.
+     */
+    private static boolean isMoveCandidate(MutablePosition position, int move) {
+        Colour sideToMove = position.getToMove();
+        Colour opponent = sideToMove.otherColour();
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        long target = 1L << to;
+        int capturedPiece = PackedMove.getCapturedPiece(move);
+        PieceType type = position.getPiece(from / 8, from % 8).getType();
+        PieceType promotion = PackedMove.getPromotion(move);
 
-            Piece piece = position.getPiece(square);
+        if (PackedMove.isEnPassant(move)) {
+            Square enPassantSquare = position.getEnPassantSquare();
+            return type == PieceType.PAWN && promotion == null && !PackedMove.isPawnAdvancesTwo(move)
+                    && enPassantSquare != null && enPassantSquare.getIndex() == to
+                    && capturedPiece == MutablePosition.pieceIndex(PieceType.PAWN, opponent)
+                    && (LeaperAttacks.pawn(from, sideToMove) & target) != 0;
+        }
+
+        // the piece on the target square, if any, has to be the captured one, and an opponent's
+        if (position.getPieceIndex(to) != capturedPiece
+                || capturedPiece != MutablePosition.NO_PIECE && (position.getOccupiedSquares(opponent) & target) == 0) {
+            return false;
+        }
+
+        if (type != PieceType.PAWN) {
+            if (promotion != null || PackedMove.isPawnAdvancesTwo(move)) {
+                return false;
+            }
+            long occupied = position.getOccupiedSquares();
+            long attacks;
+            switch (type) {
+                case KNIGHT:
+                    attacks = LeaperAttacks.knight(from);
+                    break;
+                case BISHOP:
+                    attacks = SlidingAttacks.bishop(from, occupied);
+                    break;
+                case ROOK:
+                    attacks = SlidingAttacks.rook(from, occupied);
+                    break;
+                case QUEEN:
+                    attacks = SlidingAttacks.queen(from, occupied);
+                    break;
+                default:
+                    attacks = LeaperAttacks.king(from);
+            }
+            return (attacks & target) != 0;
+        }
+
+        boolean lastRank = to < 8 || to >= 56;
+        if (lastRank != (promotion != null) || promotion == PieceType.KING || promotion == PieceType.PAWN) {
+            return false;
+        }
+        if (capturedPiece != MutablePosition.NO_PIECE) {
+            return !PackedMove.isPawnAdvancesTwo(move) && (LeaperAttacks.pawn(from, sideToMove) & target) != 0;
+        }
+        int forward = sideToMove == Colour.WHITE ? -8 : 8;
+        if (PackedMove.isPawnAdvancesTwo(move)) {
+            int startRank = sideToMove == Colour.WHITE ? 6 : 1;
+            return from / 8 == startRank && to == from + 2 * forward
+                    && (position.getOccupiedSquares() & (1L << (from + forward))) == 0;
+        }
+        return to == from + forward;
+    }
+
+    /**
+     * Appends the legal moves of the given pieces of the side to move which end on one of the target squares.
+     * <p/>
+     * Pinned pieces and the pieces giving check are determined once for the position; a candidate move of
+     * any piece other than the king is then checked against them with a few bit operations. Only king moves
+     * (target square attacked?) and en passant captures (which remove two pieces from a line) need a closer
+     * look. In double check, only king moves are generated at all.
+     *
+     * @param position position to examine
+     * @param pieces   squares of the pieces to move
+     * @param targets  allowed target squares, see {@link Movement#addMoveCandidates(int, MutablePosition, long,
+     *                 MoveList)}
+     * @param target   list to receive the moves
+     */
+    private void addLegalMoves(MutablePosition position, long pieces, long targets, MoveList target) {
+
+        int first = target.size();
+        Colour sideToMove = position.getToMove();
+        Colour opponent = sideToMove.otherColour();
+        int kingSquare = position.getKingSquare(sideToMove);
+
+        long checkers = 0;
+        long pinned = 0;
+        if (kingSquare != MutablePosition.NO_PIECE) {
+            checkers = Tools.attackersTo(position, kingSquare, opponent);
+            pinned = Tools.pinnedPieces(position, kingSquare, sideToMove);
+        }
+
+        if (checkers == 0) {
+            addMoveCandidates(position, pieces, targets, target);
+        } else {
+            addEvasions(position, pieces, targets, kingSquare, checkers, target);
+        }
+        if (kingSquare != MutablePosition.NO_PIECE) {
+            removeIllegalMoves(position, first, target, checkMask(kingSquare, checkers), pinned);
+        }
+    }
+
+    /**
+     * Appends the candidate moves out of check: king moves, and if there is only one checking piece, moves
+     * of the other pieces which capture it or block its ray. Castling is not possible in check.
+     *
+     * @param position   position to examine
+     * @param pieces     squares of the pieces to move
+     * @param targets    allowed target squares
+     * @param kingSquare square of the king in check
+     * @param checkers   pieces giving check
+     * @param target     list to receive the moves
+     */
+    private void addEvasions(MutablePosition position, long pieces, long targets, int kingSquare, long checkers,
+                             MoveList target) {
+        long king = 1L << kingSquare;
+        if ((pieces & king) != 0) {
+            kingMoves.addMoveCandidates(kingSquare, position, targets, target);
+        }
+        if ((checkers & (checkers - 1)) != 0) {
+            // double check, the king has to move
+            return;
+        }
+
+        long checkMask = checkMask(kingSquare, checkers);
+        Square enPassantSquare = position.getEnPassantSquare();
+        if (enPassantSquare != null && (checkMask & (1L << enPassantSquare.getIndex())) != 0) {
+            // en passant may block the check, it counts as a move to the square of the captured pawn
+            int ep = enPassantSquare.getIndex();
+            checkMask |= 1L << (ep < 32 ? ep + 8 : ep - 8);
+        }
+        addMoveCandidates(position, pieces & ~king, targets & checkMask, target);
+    }
+
+    /**
+     * Squares a move of a piece other than the king has to end on: the checking piece or a square between
+     * it and the king, all squares if the king is not in check.
+     */
+    private static long checkMask(int kingSquare, long checkers) {
+        if (checkers == 0) {
+            return -1L;
+        }
+        return checkers | Rays.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+    }
+
+    /**
+     * Removes the moves which leave the own king in check from the end of the list, keeping the order of the
+     * others.
+     *
+     * @param position  position to examine, with a king of the side to move
+     * @param first     index of the first move to examine
+     * @param target    list of moves
+     * @param checkMask see {@link #checkMask(int, long)}
+     * @param pinned    pinned pieces of the side to move
+     */
+    private void removeIllegalMoves(MutablePosition position, int first, MoveList target, long checkMask,
+                                    long pinned) {
+        Colour sideToMove = position.getToMove();
+        Colour opponent = sideToMove.otherColour();
+        int kingSquare = position.getKingSquare(sideToMove);
+
+        long occupiedWithoutKing = position.getOccupiedSquares() & ~(1L << kingSquare);
+        int legal = first;
+        for (int i = first; i < target.size(); ++i) {
+            int move = target.get(i);
+            int from = PackedMove.getFrom(move);
+            int to = PackedMove.getTo(move);
+
+            boolean isLegal;
+            if (from == kingSquare) {
+                // castling has been verified by the generator, including the squares crossed
+                isLegal = PackedMove.isCastling(move)
+                        || !Tools.isSquareAttacked(position, to, opponent, occupiedWithoutKing);
+            } else if (PackedMove.isEnPassant(move)) {
+                position.makeMove(move);
+                isLegal = !isCheck(position, sideToMove);
+                position.unmakeMove();
+            } else {
+                isLegal = (checkMask & (1L << to)) != 0
+                        && ((pinned & (1L << from)) == 0 || (Rays.line(kingSquare, from) & (1L << to)) != 0);
+            }
+            if (isLegal) {
+                target.set(legal++, move);
+            }
+        }
+        target.truncate(legal);
+    }
+
+    /**
+     * Appends the pseudo legal moves of the given pieces, i.e. moves which may leave the own king in check.
+     */
+    private void addMoveCandidates(MutablePosition position, long pieces, long targets, MoveList target) {
+
+        long ownSquares = pieces;
+        while (ownSquares != 0) {
+            int square = Long.numberOfTrailingZeros(ownSquares);
+            ownSquares &= ownSquares - 1;
+
+            Piece piece = position.getPiece(square / 8, square % 8);
             switch (piece.getType()) {
 
                 case KNIGHT:
-                    knightMoves.addMoveCandidates(square, position,
-                            moves);
+                    knightMoves.addMoveCandidates(square, position, targets,
+                            target);
                     break;
 
                 case QUEEN:
-                    queenMoves.addMoveCandidates(square, position,
-                            moves);
+                    queenMoves.addMoveCandidates(square, position, targets,
+                            target);
                     break;
 
                 case ROOK:
                     rookMoves
-                            .addMoveCandidates(square, position, moves);
+                            .addMoveCandidates(square, position, targets, target);
                     break;
 
                 case BISHOP:
-                    bishopMoves.addMoveCandidates(square, position,
-                            moves);
+                    bishopMoves.addMoveCandidates(square, position, targets,
+                            target);
                     break;
 
                 case PAWN:
-                    pawnMoves.addMoveCandidates(square, position,
-                            moves);
+                    pawnMoves.addMoveCandidates(square, position, targets,
+                            target);
                     break;
 
                 case KING:
-                    kingMoves.addMoveCandidates(square, position,
-                            moves);
-                    castlingMoves.addMoveCandidates(square, position,
-                            moves);
+                    kingMoves.addMoveCandidates(square, position, targets,
+                            target);
+                    castlingMoves.addMoveCandidates(square, position, targets,
+                            target);
             }
         }
-
-        Iterator<Move> iterator = moves.iterator();
-        while (iterator.hasNext()) {
-            Move move = iterator.next();
-            Position newPos = position.performMove(move);
-            if (isCheck(newPos, sideToMove)) {
-                iterator.remove();
-            }
-        }
-
-        return moves;
     }
 
     @Override
@@ -105,26 +386,105 @@ public class DefaultChessRules implements ChessRules {
 
     @Override
     public boolean isCheck(Position position, Colour colour) {
-        Square squareWithKing = position.findSquareWithKing(colour);
-        return Tools.isSquareAttacked(position, squareWithKing, colour.otherColour());
+        return isCheck(scratchBoard(position), colour);
     }
 
     @Override
-    public boolean isCheckmate(Position position) {
+    public boolean isCheck(MutablePosition position, Colour colour) {
+        return Tools.isSquareAttacked(position, position.getKingSquare(colour), colour.otherColour());
+    }
+
+    @Override
+    public boolean givesCheck(Position position, Move move) {
+        MutablePosition board = scratchBoard(position);
+        return givesCheck(board, PackedMove.fromMove(move, board));
+    }
+
+    /**
+     * Check squares are precomputed once per position and thread, so asking for each move of a position in
+     * turn is cheap.
+     */
+    @Override
+    public boolean givesCheck(MutablePosition position, int move) {
+        CheckInfo checkInfo = checkInfos.get();
+        if (!checkInfo.isValidFor(position)) {
+            checkInfo.reset(position);
+        }
+        return checkInfo.givesCheck(move);
+    }
+
+    @Override
+    public boolean hasLegalMove(Position position) {
+        return hasLegalMove(scratchBoard(position));
+    }
+
+    /**
+     * Looks for legal moves piece by piece and stops at the first one. The king is tried first, then pawns
+     * and knights, which have few moves each. Castling is not needed: if it is legal, so is the king's step
+     * towards the rook.
+     */
+    @Override
+    public boolean hasLegalMove(MutablePosition position) {
         Colour sideToMove = position.getToMove();
-        if (isCheck(position, sideToMove)) {
-            return getLegalMoves(position).isEmpty();
+        int kingSquare = position.getKingSquare(sideToMove);
+        if (kingSquare == MutablePosition.NO_PIECE) {
+            MoveList moves = new MoveList();
+            getLegalMoves(position, moves);
+            return !moves.isEmpty();
+        }
+
+        MoveList moves = scratchMoveLists.get();
+        moves.clear();
+        long pinned = Tools.pinnedPieces(position, kingSquare, sideToMove);
+        long checkers = Tools.attackersTo(position, kingSquare, sideToMove.otherColour());
+        long checkMask = checkMask(kingSquare, checkers);
+
+        kingMoves.addMoveCandidates(kingSquare, position, Movement.ALL_SQUARES, moves);
+        removeIllegalMoves(position, 0, moves, checkMask, pinned);
+        if (!moves.isEmpty() || (checkers & (checkers - 1)) != 0) {
+            // in double check, only the king may move
+            return !moves.isEmpty();
+        }
+
+        long ownPieces = position.getOccupiedSquares(sideToMove) & ~(1L << kingSquare);
+        long pawnsAndKnights = position.getPieces(PieceType.PAWN, sideToMove)
+                | position.getPieces(PieceType.KNIGHT, sideToMove);
+        if (hasLegalMove(position, ownPieces & pawnsAndKnights, moves, checkMask, pinned)) {
+            return true;
+        }
+        return hasLegalMove(position, ownPieces & ~pawnsAndKnights, moves, checkMask, pinned);
+    }
+
+    private boolean hasLegalMove(MutablePosition position, long pieces, MoveList moves, long checkMask,
+                                 long pinned) {
+        while (pieces != 0) {
+            long piece = pieces & -pieces;
+            pieces ^= piece;
+            moves.clear();
+            addMoveCandidates(position, piece, Movement.ALL_SQUARES, moves);
+            removeIllegalMoves(position, 0, moves, checkMask, pinned);
+            if (!moves.isEmpty()) {
+                return true;
+            }
         }
         return false;
     }
 
+    @Override
+    public boolean isCheckmate(Position position) {
+        MutablePosition board = scratchBoard(position);
+        return isCheck(board, board.getToMove()) && !hasLegalMove(board);
+    }
+
     @Override
     public boolean isStalemate(Position position) {
-        Collection<Move> legalMoves = getLegalMoves(position);
-        if (legalMoves.isEmpty()) {
-            Colour sideToMove = position.getToMove();
-            return !isCheck(position, sideToMove);
-        }
-        return false;
+        MutablePosition board = scratchBoard(position);
+        return !isCheck(board, board.getToMove()) && !hasLegalMove(board);
+    }
+
+    private MutablePosition scratchBoard(Position position) {
+        MutablePosition board = scratchBoards.get();
+        board.setPosition(position);
+        return board;
     }
 }
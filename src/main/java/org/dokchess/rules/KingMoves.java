@@ -17,11 +17,8 @@
  */
 package org.dokchess.rules;
 
-import org.dokchess.domain.Position;
-import org.dokchess.domain.Square;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 
 /**
  * Moves of the king (one step; castling is handled separately).
@@ -29,21 +26,7 @@ import java.util.List;
 class KingMoves extends ComplexMovement {
 
     @Override
-    protected List<Square> getReachableSquares(Position position,
-                                               Square from) {
-
-        List<Square> squares = new ArrayList<Square>();
-
-        addSquareIfReachable(position, from, 0, 1, squares);
-        addSquareIfReachable(position, from, 0, -1, squares);
-        addSquareIfReachable(position, from, 1, 0, squares);
-        addSquareIfReachable(position, from, -1, 0, squares);
-        addSquareIfReachable(position, from, 1, 1, squares);
-        addSquareIfReachable(position, from, -1, -1, squares);
-        addSquareIfReachable(position, from, 1, -1, squares);
-        addSquareIfReachable(position, from, -1, 1, squares);
-
-        return squares;
+    void addMoveCandidates(int from, MutablePosition position, long targets, MoveList target) {
+        addMoves(position, from, LeaperAttacks.king(from) & targets, target);
     }
-
 }
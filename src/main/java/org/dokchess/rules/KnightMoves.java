@@ -17,11 +17,8 @@
  */
 package org.dokchess.rules;
 
-import org.dokchess.domain.Position;
-import org.dokchess.domain.Square;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 
 /**
  * Moves of the knight.
@@ -29,20 +26,7 @@ import java.util.List;
 class KnightMoves extends ComplexMovement {
 
     @Override
-    protected List<Square> getReachableSquares(Position position,
-                                               Square from) {
-
-        List<Square> squares = new ArrayList<Square>();
-
-        addSquareIfReachable(position, from, 2, 1, squares);
-        addSquareIfReachable(position, from, 2, -1, squares);
-        addSquareIfReachable(position, from, -2, 1, squares);
-        addSquareIfReachable(position, from, -2, -1, squares);
-        addSquareIfReachable(position, from, 1, 2, squares);
-        addSquareIfReachable(position, from, -1, 2, squares);
-        addSquareIfReachable(position, from, 1, -2, squares);
-        addSquareIfReachable(position, from, -1, -2, squares);
-
-        return squares;
+    void addMoveCandidates(int from, MutablePosition position, long targets, MoveList target) {
+        addMoves(position, from, LeaperAttacks.knight(from) & targets, target);
     }
 }
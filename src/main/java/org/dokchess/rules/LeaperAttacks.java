@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+
+/**
+ * Attacks of knights, kings and pawns, precomputed for each square. Bit n of a table entry is set if the
+ * piece attacks the square with index n, see {@link org.dokchess.domain.Square#getIndex()}.
+ */
+final class LeaperAttacks {
+
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {1, -2}, {-1, 2}, {-1, -2},
+            {2, 1}, {2, -1}, {-2, 1}, {-2, -1}};
+
+    private static final int[][] KING_STEPS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0},
+            {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    /**
+     * Rank index 0 is the 8th rank, so white pawns move towards lower ranks.
+     */
+    private static final int[][] WHITE_PAWN_STEPS = {{1, -1}, {-1, -1}};
+
+    private static final int[][] BLACK_PAWN_STEPS = {{1, 1}, {-1, 1}};
+
+    private static final long[] KNIGHT = new long[64];
+
+    private static final long[] KING = new long[64];
+
+    private static final long[] WHITE_PAWN = new long[64];
+
+    private static final long[] BLACK_PAWN = new long[64];
+
+    static {
+        for (int square = 0; square < 64; ++square) {
+            KNIGHT[square] = attacks(square, KNIGHT_STEPS);
+            KING[square] = attacks(square, KING_STEPS);
+            WHITE_PAWN[square] = attacks(square, WHITE_PAWN_STEPS);
+            BLACK_PAWN[square] = attacks(square, BLACK_PAWN_STEPS);
+        }
+    }
+
+    /**
+     * Tool class, constructor not visible.
+     */
+    private LeaperAttacks() {
+    }
+
+    static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * Squares attacked (i.e. capture targets) by a pawn.
+     *
+     * @param square index of the square of the pawn
+     * @param colour colour of the pawn
+     * @return attacked squares, one or two
+     */
+    static long pawn(int square, Colour colour) {
+        return colour == Colour.WHITE ? WHITE_PAWN[square] : BLACK_PAWN[square];
+    }
+
+    private static long attacks(int square, int[][] steps) {
+        long attacks = 0;
+        for (int[] step : steps) {
+            int file = square % 8 + step[0];
+            int rank = square / 8 + step[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                attacks |= 1L << (rank * 8 + file);
+            }
+        }
+        return attacks;
+    }
+}
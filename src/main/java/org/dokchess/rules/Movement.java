@@ -18,7 +18,8 @@
 package org.dokchess.rules;
 
 import org.dokchess.domain.Move;
-import org.dokchess.domain.Piece;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 import org.dokchess.domain.Position;
 import org.dokchess.domain.Square;
 
@@ -32,96 +33,45 @@ import java.util.List;
 abstract class Movement {
 
     /**
-     * Computes move candidates from a square and appends them to the given list. Subclasses implement this
-     * according to how each piece type moves.
-     *
-     * @param from     source square which contains the moving piece
-     * @param position position to examine
-     * @param target   target list for move candidates
+     * Target squares for {@link #addMoveCandidates(int, MutablePosition, long, MoveList)} without restriction.
      */
-    abstract void addMoveCandidates(Square from, Position position,
-                                    List<Move> target);
+    static final long ALL_SQUARES = -1L;
 
     /**
-     * Steps from a square along a direction and appends every square that can be reached in a straight line.
-     * Used for rook-like sliding (and similar).
+     * Computes move candidates from a square and appends them to the given list. Subclasses implement this
+     * according to how each piece type moves.
      *
+     * @param from     index of the source square which contains the moving piece
      * @param position position to examine
-     * @param from     starting square
-     * @param dx       direction delta along file
-     * @param dy       direction delta along rank
-     * @param target   list to receive reachable squares
+     * @param target   target list for move candidates, see {@link org.dokchess.domain.PackedMove}
      */
-    protected final void addReachableSquaresInDirection(final Position position,
-                                                        final Square from, final int dx, final int dy, final List<Square> target) {
-
-        Piece movingPiece = position.getPiece(from);
-        boolean moreSquares = true;
-        int rank = from.getRank();
-        int file = from.getFile();
-
-        while (moreSquares) {
-
-            file += dx;
-            rank += dy;
-
-            if (isOnBoard(rank, file)) {
-                Piece occupant = position.getPiece(rank, file);
-                if (occupant == null) {
-                    target.add(new Square(rank, file));
-                } else {
-                    if (occupant.getColour() != movingPiece
-                            .getColour()) {
-                        // capture
-                        target.add(new Square(rank, file));
-                    }
-                    moreSquares = false;
-                }
-            } else {
-                moreSquares = false;
-            }
-        }
+    final void addMoveCandidates(int from, MutablePosition position, MoveList target) {
+        addMoveCandidates(from, position, ALL_SQUARES, target);
     }
 
     /**
-     * Looks one step from a square in the given direction. If that square is reachable, it is appended to the
-     * target list. The destination may be empty or occupied by an opponent piece that can be captured.
+     * Computes the move candidates from a square which end on one of the given target squares, e.g. only
+     * captures if the targets are the opponent's pieces. An en passant capture counts as a move to the square
+     * of the captured pawn.
      *
-     * @param position   position to examine
-     * @param from       source square
-     * @param dx         direction delta along rank
-     * @param dy         direction delta along file
-     * @param targetList target list for reachable squares
+     * @param from     index of the source square which contains the moving piece
+     * @param position position to examine
+     * @param targets  allowed target squares as a bitboard
+     * @param target   target list for move candidates, see {@link org.dokchess.domain.PackedMove}
      */
-    protected final void addSquareIfReachable(final Position position,
-                                              final Square from, final int dx, final int dy, final List<Square> targetList) {
-
-        int toRank = from.getRank() + dx;
-        int toFile = from.getFile() + dy;
-
-        if (isOnBoard(toRank, toFile)) {
-            Piece pieceToMove = position.getPiece(from);
-            Piece pieceToCapture = position.getPiece(toRank, toFile);
-            if (pieceToCapture == null) {
-                // move to an empty square
-                targetList.add(new Square(toRank, toFile));
-            } else {
-                if (pieceToCapture.getColour() != pieceToMove.getColour()) {
-                    // capture
-                    targetList.add(new Square(toRank, toFile));
-                }
-            }
-        }
-    }
+    abstract void addMoveCandidates(int from, MutablePosition position, long targets, MoveList target);
 
     /**
-     * Checks if coordinates are on chessboard.
+     * Computes move candidates from a square of an immutable position as move objects, see
+     * {@link #addMoveCandidates(int, MutablePosition, MoveList)}.
      *
-     * @param rank Rank
-     * @param file File
-     * @return true, if square on board, i.e. both values between 0..7
+     * @param from     source square which contains the moving piece
+     * @param position position to examine
+     * @param target   target list for move candidates
      */
-    private boolean isOnBoard(final int rank, final int file) {
-        return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+    final void addMoveCandidates(Square from, Position position, List<Move> target) {
+        MoveList moves = new MoveList();
+        addMoveCandidates(from.getIndex(), new MutablePosition(position), moves);
+        target.addAll(moves.toMoves());
     }
 }
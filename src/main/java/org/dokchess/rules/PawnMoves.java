@@ -20,9 +20,7 @@ package org.dokchess.rules;
 
 import org.dokchess.domain.*;
 
-import java.util.ArrayList;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Set;
 
 import static org.dokchess.domain.PieceType.*;
@@ -43,45 +41,31 @@ class PawnMoves extends Movement {
     }
 
     @Override
-    public void addMoveCandidates(Square from, Position position,
-                                  List<Move> target) {
+    public void addMoveCandidates(int from, MutablePosition position, long targets,
+                                  MoveList target) {
 
-        Piece ownPawn = position.getPiece(from);
-        int delta1 = position.getToMove() == Colour.WHITE ? -1 : +1;
-        int delta2 = position.getToMove() == Colour.WHITE ? -2 : +2;
+        Colour colour = position.getToMove();
+        int ownPawn = MutablePosition.pieceIndex(PAWN, colour);
+        int delta1 = colour == Colour.WHITE ? -8 : +8;
+        long occupied = position.getOccupiedSquares();
 
         {
             // advance one square
             //
-            Square to = new Square(from.getRank() + delta1, from.getFile());
-            if (position.getPiece(to) == null) {
-                if (to.getRank() != 0 && to.getRank() != 7) {
-                    // no promotion
-                    Move move = new Move(ownPawn, from, to);
-                    target.add(move);
-                } else {
-                    // promotion (choose piece type)
-                    for (PieceType promotionPiece : PROMOTION_PIECE_TYPES) {
-                        Move move = new Move(ownPawn, from, to, promotionPiece);
-                        target.add(move);
-                    }
+            int to = from + delta1;
+            if ((occupied & (1L << to)) == 0) {
+                if ((targets & (1L << to)) != 0) {
+                    addPawnMove(from, to, ownPawn, MutablePosition.NO_PIECE, target);
                 }
-            }
-        }
-        {
-            // advance two squares
-            //
-
-            int startRank = position.getToMove() == Colour.WHITE ? 6 : 1;
 
-            if (from.getRank() == startRank) {
-                if (position.getPiece(startRank + delta1, from.getFile()) == null) {
-                    if (position.getPiece(startRank + delta2, from.getFile()) == null) {
-                        Square to = new Square(startRank + delta2,
-                                from.getFile());
-                        Move move = new Move(ownPawn, from, to);
-                        target.add(move);
-                    }
+                // advance two squares
+                //
+                int startRank = colour == Colour.WHITE ? 6 : 1;
+                int twoSquares = to + delta1;
+                if (from / 8 == startRank && (occupied & (1L << twoSquares)) == 0
+                        && (targets & (1L << twoSquares)) != 0) {
+                    target.add(PackedMove.create(from, twoSquares, ownPawn, MutablePosition.NO_PIECE,
+                            PackedMove.PAWN_ADVANCES_TWO));
                 }
             }
         }
@@ -89,32 +73,42 @@ class PawnMoves extends Movement {
 
             // Capture
             //
-            List<Square> squares = new ArrayList<Square>();
-            addSquareIfReachable(position, from, delta1, +1, squares);
-            addSquareIfReachable(position, from, delta1, -1, squares);
-            for (Square to : squares) {
-                if (to.getRank() != 0 && to.getRank() != 7) {
-                    if (position.getPiece(to) != null) {
-                        // capture without promotion
-                        Move move = new Move(ownPawn, from, to, true);
-                        target.add(move);
-                    } else if (to.equals(position.getEnPassantSquare())) {
-                        // capture, en passant
-                        Move move = new Move(ownPawn, from, to, true);
-                        target.add(move);
-                    }
+            long opponentPieces = position.getOccupiedSquares(colour.otherColour()) & targets;
+            long attacks = LeaperAttacks.pawn(from, colour);
+            long captures = attacks & opponentPieces;
+            while (captures != 0) {
+                int to = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                // capture, with or without promotion
+                addPawnMove(from, to, ownPawn, position.getPieceIndex(to), target);
+            }
 
-                } else {
-                    if (position.getPiece(to) != null) {
-                        // promotion with capture
-                        for (PieceType promotionPiece : PROMOTION_PIECE_TYPES) {
-                            Move move = new Move(ownPawn, from, to, true,
-                                    promotionPiece);
-                            target.add(move);
-                        }
-                    }
+            Square enPassantSquare = position.getEnPassantSquare();
+            if (enPassantSquare != null && (attacks & (1L << enPassantSquare.getIndex())) != 0) {
+                // capture, en passant (the captured pawn is next to ours)
+                int to = enPassantSquare.getIndex();
+                if ((targets & (1L << (from / 8 * 8 + to % 8))) != 0) {
+                    target.add(PackedMove.create(from, to, ownPawn,
+                            MutablePosition.pieceIndex(PAWN, colour.otherColour()), PackedMove.EN_PASSANT));
                 }
             }
         }
     }
+
+    /**
+     * Adds a pawn move with a single step forward or a capture. On the last rank, one move for each
+     * possible promotion piece is added.
+     */
+    private void addPawnMove(int from, int to, int pawn, int capturedPiece, MoveList target) {
+        int toRank = to / 8;
+        if (toRank != 0 && toRank != 7) {
+            // no promotion
+            target.add(PackedMove.create(from, to, pawn, capturedPiece));
+        } else {
+            // promotion (choose piece type)
+            for (PieceType promotionPiece : PROMOTION_PIECE_TYPES) {
+                target.add(PackedMove.createPromotion(from, to, pawn, capturedPiece, promotionPiece));
+            }
+        }
+    }
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.Position;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Performance test of move generation ("perft"): counts the leaf nodes of the tree of legal moves up to
+ * a given depth. The counts of well-known positions are published, so perft proves the correctness of
+ * the move generator (including castling, en passant and promotion) and measures its speed.
+ * <p/>
+ * Moves are made and taken back on a {@link MutablePosition}, like in the search. At the last ply, the
+ * legal moves are only counted, not made ("bulk counting"). Optionally, node counts of subtrees are stored
+ * in a hash table, and {@link #perftParallel(Position, int, ForkJoinPool)} distributes the subtrees over
+ * several threads.
+ */
+public final class Perft {
+
+    /**
+     * Standard positions with their published node counts, see the chess programming wiki ("Perft Results").
+     */
+    public static final List<ReferencePosition> REFERENCE_POSITIONS = Collections.unmodifiableList(
+            Arrays.asList(
+                    new ReferencePosition("Starting position",
+                            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                            20, 400, 8902, 197281, 4865609),
+                    new ReferencePosition("Kiwipete",
+                            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                            48, 2039, 97862, 4085603),
+                    new ReferencePosition("Position 3 (en passant, pins)",
+                            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                            14, 191, 2812, 43238, 674624),
+                    new ReferencePosition("Position 4 (castling, promotion)",
+                            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                            6, 264, 9467, 422333),
+                    new ReferencePosition("Position 5",
+                            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                            44, 1486, 62379, 2103487),
+                    new ReferencePosition("Position 6",
+                            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                            46, 2079, 89890, 3894594)));
+
+    /**
+     * Timed runs of each variant in {@link #compareWithParallel(Position, int, ForkJoinPool, PrintStream)}.
+     */
+    private static final int TIMED_RUNS = 5;
+
+    /**
+     * Below this depth, a subtree is counted by a single task of the parallel perft.
+     */
+    private static final int SPLIT_DEPTH = 4;
+
+    private final ChessRules chessRules;
+
+    /**
+     * Node counts of subtrees, {@code null} if no hash table is used.
+     */
+    private final PerftHash hash;
+
+    public Perft(ChessRules chessRules) {
+        this(chessRules, 0);
+    }
+
+    /**
+     * Creates a perft with a hash table for transposed subtrees.
+     *
+     * @param chessRules      rules which generate the legal moves
+     * @param sizeInMegabytes size of the hash table, 0 for none
+     */
+    public Perft(ChessRules chessRules, int sizeInMegabytes) {
+        this.chessRules = chessRules;
+        this.hash = sizeInMegabytes > 0 ? new PerftHash(sizeInMegabytes) : null;
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves.
+     *
+     * @param position start position
+     * @param depth    depth in half moves, 0 counts the position itself
+     * @return number of leaf nodes
+     */
+    public long perft(Position position, int depth) {
+        return perft(new MutablePosition(position), depth, createMoveLists(depth));
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves with the threads of the given pool. Subtrees near the
+     * root are split into tasks; all tasks share the hash table, if any.
+     *
+     * @param position start position
+     * @param depth    depth in half moves, 0 counts the position itself
+     * @param pool     threads for the tasks
+     * @return number of leaf nodes
+     */
+    public long perftParallel(Position position, int depth, ForkJoinPool pool) {
+        return pool.invoke(new PerftTask(position, depth));
+    }
+
+    /**
+     * Counts the leaf nodes below each legal move of the position ("divide"). Comparing the result with
+     * another program narrows down a wrong count to a single move.
+     *
+     * @param position start position
+     * @param depth    depth in half moves including the root move, at least 1
+     * @return node count per root move, in the order of move generation
+     */
+    public Map<Move, Long> divide(Position position, int depth) {
+        MutablePosition board = new MutablePosition(position);
+        MoveList[] moveLists = createMoveLists(depth);
+        MoveList rootMoves = new MoveList();
+        chessRules.getLegalMoves(board, rootMoves);
+
+        Map<Move, Long> result = new LinkedHashMap<Move, Long>();
+        for (int i = 0; i < rootMoves.size(); ++i) {
+            int move = rootMoves.get(i);
+            board.makeMove(move);
+            result.put(PackedMove.toMove(move), perft(board, depth - 1, moveLists));
+            board.unmakeMove();
+        }
+        return result;
+    }
+
+    /**
+     * Runs perft for the reference positions and prints node counts, time and nodes per second.
+     *
+     * @param maxDepth maximum depth, positions are searched to this depth or as deep as counts are known
+     * @param out      stream for the report
+     * @return {@code true} if all counts match
+     */
+    public boolean runReferencePositions(int maxDepth, PrintStream out) {
+        boolean allCorrect = true;
+        long totalNodes = 0;
+        long totalMillis = 0;
+        for (ReferencePosition reference : REFERENCE_POSITIONS) {
+            Position position = new Position(reference.getFen());
+            int depth = Math.min(maxDepth, reference.getMaxDepth());
+            long start = System.currentTimeMillis();
+            long nodes = perft(position, depth);
+            long millis = System.currentTimeMillis() - start;
+
+            boolean correct = nodes == reference.getNodes(depth);
+            allCorrect &= correct;
+            totalNodes += nodes;
+            totalMillis += millis;
+            out.printf("%-34s depth %d %12d nodes %s%s%n", reference.getName(), depth, nodes,
+                    correct ? "ok" : "WRONG, expected " + reference.getNodes(depth), speed(nodes, millis));
+        }
+        out.printf("Total %d nodes%s%n", totalNodes, speed(totalNodes, totalMillis));
+        return allCorrect;
+    }
+
+    /**
+     * Runs perft sequentially and with the threads of the pool, and prints node counts, nodes per second and
+     * the speedup of the parallel run. Both variants are run once untimed to warm up the JIT compiler,
+     * then {@value #TIMED_RUNS} times alternately; the fastest run of each counts. The hash table,
+     * if any, is cleared before each run.
+     *
+     * @param position start position
+     * @param depth    depth in half moves
+     * @param pool     threads for the parallel run
+     * @param out      stream for the report
+     * @return {@code true} if both runs count the same number of nodes
+     */
+    public boolean compareWithParallel(Position position, int depth, ForkJoinPool pool, PrintStream out) {
+        clearHash();
+        perft(position, depth);
+        clearHash();
+        perftParallel(position, depth, pool);
+
+        long sequentialNodes = 0;
+        long sequentialMillis = Long.MAX_VALUE;
+        long parallelNodes = 0;
+        long parallelMillis = Long.MAX_VALUE;
+        boolean sameCounts = true;
+        for (int run = 0; run < TIMED_RUNS; ++run) {
+            clearHash();
+            long start = System.currentTimeMillis();
+            sequentialNodes = perft(position, depth);
+            sequentialMillis = Math.min(sequentialMillis, System.currentTimeMillis() - start);
+
+            clearHash();
+            start = System.currentTimeMillis();
+            parallelNodes = perftParallel(position, depth, pool);
+            parallelMillis = Math.min(parallelMillis, System.currentTimeMillis() - start);
+            sameCounts &= sequentialNodes == parallelNodes;
+        }
+
+        out.printf("Sequential:          %d nodes%s%n", sequentialNodes, speed(sequentialNodes, sequentialMillis));
+        out.printf("Parallel, %2d threads: %d nodes%s%n", pool.getParallelism(), parallelNodes,
+                speed(parallelNodes, parallelMillis));
+
+        out.printf("Speedup %.2f%n", (double) Math.max(sequentialMillis, 1) / Math.max(parallelMillis, 1));
+        return sameCounts;
+    }
+
+    private void clearHash() {
+        if (hash != null) {
+            hash.clear();
+        }
+    }
+
+    /**
+     * Formats time and nodes per second.
+     */
+    static String speed(long nodes, long millis) {
+        return String.format(" in %d ms (%d nodes/s)", millis, nodes * 1000 / Math.max(millis, 1));
+    }
+
+    private long perft(MutablePosition board, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        long key = board.getHashKey();
+        if (hash != null && depth > 1) {
+            long nodes = hash.get(key, depth);
+            if (nodes >= 0) {
+                return nodes;
+            }
+        }
+
+        MoveList moves = moveLists[depth];
+        moves.clear();
+        chessRules.getLegalMoves(board, moves);
+        if (depth == 1) {
+            // bulk counting
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); ++i) {
+            board.makeMove(moves.get(i));
+            nodes += perft(board, depth - 1, moveLists);
+            board.unmakeMove();
+        }
+        if (hash != null) {
+            hash.put(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    private static MoveList[] createMoveLists(int depth) {
+        MoveList[] moveLists = new MoveList[depth + 1];
+        for (int i = 0; i <= depth; ++i) {
+            moveLists[i] = new MoveList();
+        }
+        return moveLists;
+    }
+
+    /**
+     * Subtree of the parallel perft. Near the root, a task forks one task per legal move; deeper subtrees
+     * are counted sequentially on a board of their own.
+     */
+    private final class PerftTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Position position;
+
+        private final int depth;
+
+        PerftTask(Position position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth < SPLIT_DEPTH) {
+                return perft(new MutablePosition(position), depth, createMoveLists(depth));
+            }
+
+            long key = position.getHashKey();
+            if (hash != null) {
+                long nodes = hash.get(key, depth);
+                if (nodes >= 0) {
+                    return nodes;
+                }
+            }
+
+            MoveList moves = new MoveList();
+            chessRules.getLegalMoves(new MutablePosition(position), moves);
+            List<PerftTask> subtasks = new ArrayList<PerftTask>(moves.size());
+            for (int i = 0; i < moves.size(); ++i) {
+                subtasks.add(new PerftTask(position.performMove(PackedMove.toMove(moves.get(i))), depth - 1));
+            }
+
+            long nodes = 0;
+            for (PerftTask subtask : invokeAll(subtasks)) {
+                nodes += subtask.join();
+            }
+            if (hash != null) {
+                hash.put(key, depth, nodes);
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * A position with known perft results.
+     */
+    public static final class ReferencePosition {
+
+        private final String name;
+
+        private final String fen;
+
+        private final long[] nodes;
+
+        /**
+         * Creates a reference position.
+         *
+         * @param name  description
+         * @param fen   position in Forsyth–Edwards notation
+         * @param nodes expected node counts for depth 1, 2, ...
+         */
+        public ReferencePosition(String name, String fen, long... nodes) {
+            this.name = name;
+            this.fen = fen;
+            this.nodes = nodes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFen() {
+            return fen;
+        }
+
+        public int getMaxDepth() {
+            return nodes.length;
+        }
+
+        /**
+         * Returns the expected node count.
+         *
+         * @param depth depth, 1 to {@link #getMaxDepth()}
+         * @return number of leaf nodes at that depth
+         */
+        public long getNodes(int depth) {
+            return nodes[depth - 1];
+        }
+    }
+}
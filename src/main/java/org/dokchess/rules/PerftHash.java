@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import java.util.Arrays;
+
+/**
+ * Hash table for perft: node counts of subtrees, keyed by the hash key of the position and the depth.
+ * Transposed subtrees are counted only once.
+ * <p/>
+ * The table is shared by the threads of the parallel perft without locks. Each entry consists of two longs,
+ * the data (node count and depth) and the hash key XOR the data. An entry which is torn by concurrent
+ * writes does not match its key any more and is ignored like a miss, so a count read from the table is
+ * always correct (up to key collisions, which are very unlikely with 64 bit keys).
+ */
+final class PerftHash {
+
+    private static final int DEPTH_BITS = 8;
+
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    /**
+     * Two longs per slot: key XOR data, data.
+     */
+    private final long[] entries;
+
+    private final int mask;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param sizeInMegabytes approximate size, rounded down to a power of two number of entries
+     */
+    PerftHash(int sizeInMegabytes) {
+        long slots = Long.highestOneBit(Math.max(1L, sizeInMegabytes * 1024L * 1024L / 16));
+        slots = Math.min(slots, 1L << 27);
+        entries = new long[(int) (2 * slots)];
+        mask = (int) (slots - 1);
+    }
+
+    /**
+     * Looks up the node count of a subtree.
+     *
+     * @param key   hash key of the position
+     * @param depth remaining depth
+     * @return number of leaf nodes, or -1 if not in the table
+     */
+    long get(long key, int depth) {
+        int index = 2 * index(key, depth);
+        long data = entries[index + 1];
+        if ((entries[index] ^ data) == key && (data & DEPTH_MASK) == depth) {
+            return data >>> DEPTH_BITS;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the node count of a subtree, replacing any previous entry in the slot.
+     *
+     * @param key   hash key of the position
+     * @param depth remaining depth
+     * @param nodes number of leaf nodes
+     */
+    void put(long key, int depth, long nodes) {
+        int index = 2 * index(key, depth);
+        long data = nodes << DEPTH_BITS | depth;
+        entries[index] = key ^ data;
+        entries[index + 1] = data;
+    }
+
+    void clear() {
+        Arrays.fill(entries, 0L);
+    }
+
+    private int index(long key, int depth) {
+        return (int) (key ^ key >>> 32 ^ depth * 0x9E3779B9L) & mask;
+    }
+}
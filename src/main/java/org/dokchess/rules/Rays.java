@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+/**
+ * Squares between and on the lines through two squares, precomputed for all pairs of squares.
+ * Used for pinned pieces and for blocking a check.
+ */
+final class Rays {
+
+    private static final long[][] BETWEEN = new long[64][64];
+
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int a = 0; a < 64; ++a) {
+            for (int b = 0; b < 64; ++b) {
+                if (a == b) {
+                    continue;
+                }
+                long bitA = 1L << a;
+                long bitB = 1L << b;
+                if ((SlidingAttacks.rook(a, 0L) & bitB) != 0) {
+                    BETWEEN[a][b] = SlidingAttacks.rook(a, bitB) & SlidingAttacks.rook(b, bitA);
+                    LINE[a][b] = SlidingAttacks.rook(a, 0L) & SlidingAttacks.rook(b, 0L) | bitA | bitB;
+                } else if ((SlidingAttacks.bishop(a, 0L) & bitB) != 0) {
+                    BETWEEN[a][b] = SlidingAttacks.bishop(a, bitB) & SlidingAttacks.bishop(b, bitA);
+                    LINE[a][b] = SlidingAttacks.bishop(a, 0L) & SlidingAttacks.bishop(b, 0L) | bitA | bitB;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tool class, constructor not visible.
+     */
+    private Rays() {
+    }
+
+    /**
+     * Squares strictly between two squares on a common rank, file or diagonal.
+     *
+     * @param a index of the first square
+     * @param b index of the second square
+     * @return bitboard of the squares in between, 0 if the squares are not on a common line or adjacent
+     */
+    static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * The whole rank, file or diagonal through two squares, from one edge of the board to the other.
+     *
+     * @param a index of the first square
+     * @param b index of the second square
+     * @return bitboard of the line, 0 if the squares are not on a common line
+     */
+    static long line(int a, int b) {
+        return LINE[a][b];
+    }
+}
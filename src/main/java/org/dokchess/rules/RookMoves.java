@@ -17,11 +17,8 @@
  */
 package org.dokchess.rules;
 
-import org.dokchess.domain.Position;
-import org.dokchess.domain.Square;
-
-import java.util.ArrayList;
-import java.util.List;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
 
 /**
  * Moves of the rook.
@@ -31,15 +28,8 @@ import java.util.List;
 class RookMoves extends ComplexMovement {
 
     @Override
-    protected List<Square> getReachableSquares(Position position, Square from) {
-        List<Square> squares = new ArrayList<Square>();
-
-        addReachableSquaresInDirection(position, from, 0, 1, squares);
-        addReachableSquaresInDirection(position, from, 1, 0, squares);
-        addReachableSquaresInDirection(position, from, 0, -1, squares);
-        addReachableSquaresInDirection(position, from, -1, 0, squares);
-
-        return squares;
+    void addMoveCandidates(int from, MutablePosition position, long targets, MoveList target) {
+        addMoves(position, from, SlidingAttacks.rook(from, position.getOccupiedSquares()) & targets, target);
     }
 
 }
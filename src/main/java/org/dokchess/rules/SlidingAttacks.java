@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+/**
+ * Attacks of sliding pieces (rook, bishop, queen) with magic bitboards. For each square, the relevant
+ * occupancy (the squares on the rays, without the edge of the board) is multiplied with a magic number;
+ * the upper bits of the product index a table with the attacked squares for that occupancy.
+ * <p/>
+ * The magic numbers were found once with a random search (sparse candidates from a xorshift generator) for
+ * the square indices of {@link org.dokchess.domain.Square#getIndex()}. The attack tables are filled at class
+ * initialisation; a magic number which maps two occupancies with different attacks to the same entry is
+ * reported as an error.
+ */
+final class SlidingAttacks {
+
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] ROOK_MAGICS = {
+            0x0480046281400010L, 0x80C0200010004000L, 0x8780200008300180L, 0x8880060800100080L,
+            0x2100030010080084L, 0x0100040001000802L, 0x0200040800810200L, 0x0580008002407100L,
+            0x1000800080400020L, 0x0080401000402001L, 0x800C802002100880L, 0x800A002200884010L,
+            0x2046002008108600L, 0x0222009002000804L, 0x100B000421001200L, 0x0240800100004080L,
+            0x4540008020408006L, 0x8010054020084002L, 0x7D10010100200040L, 0x1408008010000882L,
+            0x4408010005000810L, 0x001E008004000280L, 0x0230040001080210L, 0x0000020004004081L,
+            0x0100400080208001L, 0x1000842300400100L, 0x1060100080200082L, 0x3219004B00100020L,
+            0x9010080080800400L, 0x8440020080800400L, 0x6008010080800200L, 0x4123008200010044L,
+            0x0280002001400240L, 0x0220100040400020L, 0x0060801003802008L, 0x0008100080800800L,
+            0x0105000801001004L, 0x100B000803000400L, 0x0000024814001021L, 0x00408000C2802100L,
+            0x4C40004020808002L, 0x4410500420024000L, 0x00C0100020008080L, 0x0000100008008080L,
+            0x8002000804220011L, 0x0802000804010100L, 0x0243100201040008L, 0x0000009100420014L,
+            0x1000400280022480L, 0x0020200040100040L, 0x00A000100800C140L, 0x0410001408008080L,
+            0x0000080004008080L, 0x0100020004008080L, 0x0303000200040300L, 0x1480006104008200L,
+            0x00008002204A1101L, 0x1040090010224081L, 0x4300C0200011000DL, 0x8002041001002009L,
+            0x2005000800020411L, 0x110A008408100102L, 0x0006000108008402L, 0x0200002900884402L
+    };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x48081010008A2A80L, 0x000948110C0B2081L, 0x0944140400500000L, 0x4984104A00000101L,
+            0x4004030818283008L, 0x0206012462000121L, 0x1A02013008040001L, 0x0001008044200440L,
+            0x0000312208080880L, 0x0220021002009900L, 0x8080880801082000L, 0x000C11040080102AL,
+            0x1402440421000210L, 0x0010120802080A81L, 0x0080084202104028L, 0x1100002082082082L,
+            0x0008403429080820L, 0x8104868204040412L, 0x6424084043060030L, 0x1108000420401000L,
+            0x9004101202020240L, 0x0032400608200412L, 0x0001009610822080L, 0x0008403429080820L,
+            0x0008068340104200L, 0x0010102858090121L, 0x81004C0018080313L, 0x4048080004820002L,
+            0x000900401C004049L, 0x0009420121C1101CL, 0x4828504005040211L, 0x4828504005040211L,
+            0x0041041381202000L, 0x01008C1005601680L, 0x01D010900002040AL, 0x4040020080080080L,
+            0x4801080200802200L, 0x4801080200802200L, 0x0010046108108080L, 0x90409090810A0220L,
+            0x8004020242201020L, 0x8004020242201020L, 0x0202010028020480L, 0x0000041144000801L,
+            0x00002000A4021080L, 0x0504090045040200L, 0x8182041102094400L, 0x0550008100480101L,
+            0xC002080404040400L, 0x0382004108292000L, 0x12000100A8040020L, 0xA005020442088020L,
+            0x2000001102020300L, 0x000021E0420C8808L, 0x3060200484888400L, 0x01280101021A0802L,
+            0x1030820110010500L, 0x0080012608025800L, 0x0002810084008800L, 0x800080000C208800L,
+            0xA408002140028204L, 0x0010006020322084L, 0x0210401044110050L, 0x40106000A1160020L
+    };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    static {
+        for (int square = 0; square < 64; ++square) {
+            initSquare(square, ROOK_DIRECTIONS, ROOK_MAGICS[square], ROOK_MASKS, ROOK_SHIFTS, ROOK_ATTACKS);
+            initSquare(square, BISHOP_DIRECTIONS, BISHOP_MAGICS[square], BISHOP_MASKS, BISHOP_SHIFTS,
+                    BISHOP_ATTACKS);
+        }
+    }
+
+    /**
+     * Tool class, constructor not visible.
+     */
+    private SlidingAttacks() {
+    }
+
+    /**
+     * Squares attacked by a rook.
+     *
+     * @param square   index of the square of the rook
+     * @param occupied all occupied squares
+     * @return attacked squares, including occupied ones (of either colour) which block a ray
+     */
+    static long rook(int square, long occupied) {
+        return ROOK_ATTACKS[square][(int) ((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]
+                >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * Squares attacked by a bishop, see {@link #rook(int, long)}.
+     */
+    static long bishop(int square, long occupied) {
+        return BISHOP_ATTACKS[square][(int) ((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]
+                >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Squares attacked by a queen, see {@link #rook(int, long)}.
+     */
+    static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    private static void initSquare(int square, int[][] directions, long magic, long[] masks, int[] shifts,
+                                   long[][] attacks) {
+        long mask = relevantOccupancy(square, directions);
+        int bits = Long.bitCount(mask);
+        int shift = 64 - bits;
+        long[] table = new long[1 << bits];
+        boolean[] used = new boolean[table.length];
+
+        // all subsets of the mask ("carry rippler")
+        long occupancy = 0;
+        do {
+            int index = (int) (occupancy * magic >>> shift);
+            long squares = slidingAttacks(square, occupancy, directions);
+            if (used[index] && table[index] != squares) {
+                throw new IllegalStateException("Magic number for square " + square + " does not work");
+            }
+            used[index] = true;
+            table[index] = squares;
+            occupancy = (occupancy - mask) & mask;
+        } while (occupancy != 0);
+
+        masks[square] = mask;
+        shifts[square] = shift;
+        attacks[square] = table;
+    }
+
+    /**
+     * Squares on the rays from the square, without the last square of each ray. A piece on the edge of
+     * the board does not change the attacks.
+     */
+    private static long relevantOccupancy(int square, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int file = square % 8 + direction[0];
+            int rank = square / 8 + direction[1];
+            while (isOnBoard(rank + direction[1], file + direction[0])) {
+                mask |= 1L << (rank * 8 + file);
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Attacks computed by walking the rays, used to fill the tables.
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int file = square % 8 + direction[0];
+            int rank = square / 8 + direction[1];
+            while (isOnBoard(rank, file)) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static boolean isOnBoard(int rank, int file) {
+        return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.PieceType;
+import org.dokchess.domain.Position;
+
+import static org.dokchess.domain.PieceType.*;
+
+/**
+ * Static exchange evaluation (SEE): the material balance of the sequence of captures on the target square
+ * of a move, without making any moves. Both sides capture with their least valuable piece first and may
+ * stop capturing when it does not pay off. Sliding pieces behind other attackers (x-rays) join in when the
+ * piece in front of them has captured.
+ * <p/>
+ * Pinned pieces and checks are not taken into account. Values are those of the material evaluation:
+ * pawn 1, knight and bishop 3, rook 5, queen 9.
+ */
+public final class StaticExchange {
+
+    /**
+     * Values by piece type ordinal (king, queen, rook, bishop, knight, pawn). Capturing the king ends every
+     * exchange.
+     */
+    private static final int[] VALUES = {100, 9, 5, 3, 3, 1};
+
+    /**
+     * Piece types in the order in which they join an exchange.
+     */
+    private static final PieceType[] LEAST_VALUABLE_FIRST = {PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING};
+
+    /**
+     * Longest possible exchange: 32 pieces on the board.
+     */
+    private static final int MAX_CAPTURES = 32;
+
+    /**
+     * Gains of the exchange per thread, reused because the quiescence search calls SEE for each capture.
+     */
+    private static final ThreadLocal<int[]> GAINS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[MAX_CAPTURES];
+        }
+    };
+
+    /**
+     * Board per thread for {@link #see(Position, Move)}, so that immutable positions are not copied each time.
+     */
+    private static final ThreadLocal<MutablePosition> SCRATCH_BOARDS = new ThreadLocal<MutablePosition>() {
+        @Override
+        protected MutablePosition initialValue() {
+            return new MutablePosition(new Position());
+        }
+    };
+
+    /**
+     * Tool class, constructor not visible.
+     */
+    private StaticExchange() {
+    }
+
+    /**
+     * Evaluates the exchange started by the given move, see {@link #see(MutablePosition, int)}.
+     *
+     * @param position position before the move
+     * @param move     move to evaluate, usually a capture
+     * @return material gain of the moving side, negative for a losing capture
+     */
+    public static int see(Position position, Move move) {
+        MutablePosition board = SCRATCH_BOARDS.get();
+        board.setPosition(position);
+        return see(board, PackedMove.fromMove(move, board));
+    }
+
+    /**
+     * Evaluates the exchange started by the given move. E.g. a pawn capturing a protected knight yields 2,
+     * a queen capturing a protected pawn yields -8, and a quiet move to a square attacked by a pawn yields the
+     * negative value of the moving piece.
+     *
+     * @param position position before the move, not changed
+     * @param move     packed move to evaluate, usually a capture
+     * @return material gain of the moving side, negative for a losing capture
+     */
+    public static int see(MutablePosition position, int move) {
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int[] gain = GAINS.get();
+
+        int captured = PackedMove.getCapturedPiece(move);
+        gain[0] = captured == MutablePosition.NO_PIECE ? 0 : value(captured % 6);
+        int pieceOnSquare = PackedMove.getPiece(move) % 6;
+        if (PackedMove.isPromotion(move)) {
+            pieceOnSquare = PackedMove.getPromotion(move).ordinal();
+            gain[0] += value(pieceOnSquare) - value(PAWN.ordinal());
+        }
+
+        long occupied = position.getOccupiedSquares() & ~(1L << from);
+        if (PackedMove.isEnPassant(move)) {
+            // the captured pawn is not on the target square
+            occupied &= ~(1L << (from / 8 * 8 + to % 8));
+        }
+
+        Colour side = position.getToMove();
+        long attackers = Tools.attackersTo(position, to, occupied) & occupied;
+
+        int depth = 0;
+        while (true) {
+            side = side.otherColour();
+            long sideAttackers = attackers & position.getOccupiedSquares(side);
+            if (sideAttackers == 0 || depth + 1 == MAX_CAPTURES) {
+                break;
+            }
+
+            // capture the piece on the square with the least valuable attacker
+            depth++;
+            gain[depth] = value(pieceOnSquare) - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                // neither side can improve by continuing
+                break;
+            }
+            for (PieceType type : LEAST_VALUABLE_FIRST) {
+                long pieces = sideAttackers & position.getPieces(type, side);
+                if (pieces != 0) {
+                    occupied &= ~(pieces & -pieces);
+                    pieceOnSquare = type.ordinal();
+                    break;
+                }
+            }
+
+            // sliding pieces behind the one which has captured
+            attackers = Tools.attackersTo(position, to, occupied) & occupied;
+        }
+
+        // each side chooses between capturing and stopping, from the end of the sequence
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    private static int value(int typeOrdinal) {
+        return VALUES[typeOrdinal];
+    }
+}
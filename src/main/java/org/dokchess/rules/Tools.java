@@ -19,15 +19,13 @@ package org.dokchess.rules;
 
 import org.dokchess.domain.*;
 
-import java.util.EnumSet;
-import java.util.Set;
+import static org.dokchess.domain.PieceType.*;
 
-final class Tools {
-
-    private static final Set<PieceType> QUEEN_BISHOP = EnumSet.of(PieceType.QUEEN,
-            PieceType.BISHOP);
-    private static final Set<PieceType> QUEEN_ROOK = EnumSet.of(PieceType.QUEEN,
-            PieceType.ROOK);
+/**
+ * Attack detection on bitboards, shared by move generation, the rules and the engine: whether a square is
+ * attacked, and by which pieces.
+ */
+public final class Tools {
 
     /**
      * Tool class, constructor not visible.
@@ -45,85 +43,68 @@ final class Tools {
      * @param colour   colour of the potential attacking side
      * @return true if a piece of that colour attacks the square
      */
-    public static boolean isSquareAttacked(Position position, Square square,
+    public static boolean isSquareAttacked(MutablePosition position, Square square,
+                                           Colour colour) {
+        return isSquareAttacked(position, square.getIndex(), colour);
+    }
+
+    /**
+     * Returns whether the square with the given index is attacked by any piece of the given colour,
+     * see {@link #isSquareAttacked(MutablePosition, Square, Colour)}.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   index of the square to test, 0-63
+     * @param colour   colour of the potential attacking side
+     * @return true if a piece of that colour attacks the square
+     */
+    public static boolean isSquareAttacked(MutablePosition position, int square,
                                            Colour colour) {
+        return isSquareAttacked(position, square, colour, position.getOccupiedSquares());
+    }
+
+    /**
+     * Returns whether the square is attacked, with the given squares blocking sliding pieces instead of the
+     * occupied squares of the position. Used for king moves, where the king itself must not block the ray
+     * of a checking rook, bishop or queen.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   index of the square to test, 0-63
+     * @param colour   colour of the potential attacking side
+     * @param occupied squares which block sliding pieces
+     * @return true if a piece of that colour attacks the square
+     */
+    static boolean isSquareAttacked(MutablePosition position, int square, Colour colour, long occupied) {
+
+        long queens = position.getPieces(QUEEN, colour);
 
         // Diagonal (queen / bishop)
-        boolean bishopOrQueenDiagonalAttack = isAttackedAlongRay(position,
-                square, colour, 1, 1, QUEEN_BISHOP)
-                || isAttackedAlongRay(position, square, colour, -1, -1,
-                QUEEN_BISHOP)
-                || isAttackedAlongRay(position, square, colour, 1, -1,
-                QUEEN_BISHOP)
-                || isAttackedAlongRay(position, square, colour, -1, 1,
-                QUEEN_BISHOP);
-        if (bishopOrQueenDiagonalAttack) {
-            return true;
+        long queensAndBishops = queens | position.getPieces(BISHOP, colour);
+        if (queensAndBishops != 0) {
+            if ((SlidingAttacks.bishop(square, occupied) & queensAndBishops) != 0) {
+                return true;
+            }
         }
 
         // Orthogonal (queen / rook)
-        boolean rookOrQueenLineAttack = isAttackedAlongRay(position, square,
-                colour, 1, 0, QUEEN_ROOK)
-                || isAttackedAlongRay(position, square, colour, 0, 1,
-                QUEEN_ROOK)
-                || isAttackedAlongRay(position, square, colour, -1, 0,
-                QUEEN_ROOK)
-                || isAttackedAlongRay(position, square, colour, 0, -1,
-                QUEEN_ROOK);
-        if (rookOrQueenLineAttack) {
-            return true;
+        long queensAndRooks = queens | position.getPieces(ROOK, colour);
+        if (queensAndRooks != 0) {
+            if ((SlidingAttacks.rook(square, occupied) & queensAndRooks) != 0) {
+                return true;
+            }
         }
 
         // Knight
-        boolean knightAttack = isSquareAttackedFromSquare(position, square,
-                colour, 1, 2, PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, 1, -2,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, -1, 2,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, -1, -2,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, 2, 1,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, 2, -1,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, -2, 1,
-                PieceType.KNIGHT)
-                || isSquareAttackedFromSquare(position, square, colour, -2, -1,
-                PieceType.KNIGHT);
-        if (knightAttack) {
+        if ((LeaperAttacks.knight(square) & position.getPieces(KNIGHT, colour)) != 0) {
             return true;
         }
 
-        // Pawn
-        int pawnRankDelta = colour == Colour.WHITE ? +1 : -1;
-        boolean pawnAttack = isSquareAttackedFromSquare(position, square,
-                colour, 1, pawnRankDelta, PieceType.PAWN)
-                || isSquareAttackedFromSquare(position, square, colour, -1, pawnRankDelta,
-                PieceType.PAWN);
-        if (pawnAttack) {
+        // Pawn (attacks the square if a pawn of the other colour on the square would attack the pawn)
+        if ((LeaperAttacks.pawn(square, colour.otherColour()) & position.getPieces(PAWN, colour)) != 0) {
             return true;
         }
 
         // King
-        boolean kingAttack = isSquareAttackedFromSquare(position, square,
-                colour, 0, 1, PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, 0, -1,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, 1, 0,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, -1, 0,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, 1, 1,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, 1, -1,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, -1, 1,
-                PieceType.KING)
-                || isSquareAttackedFromSquare(position, square, colour, -1, -1,
-                PieceType.KING);
-
-        if (kingAttack) {
+        if ((LeaperAttacks.king(square) & position.getPieces(KING, colour)) != 0) {
             return true;
         }
 
@@ -131,63 +112,143 @@ final class Tools {
     }
 
     /**
-     * Walks along a ray from {@code square} in direction ({@code dFile}, {@code dRank}) and returns
-     * whether the first piece encountered on that ray is of {@code colour} and has a type in {@code pieceTypes}.
-     * File and rank deltas match {@link Movement#addReachableSquaresInDirection}.
+     * Returns the pieces of the given colour which attack the square, see
+     * {@link #attackersTo(MutablePosition, int, Colour)}.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   the square
+     * @param colour   colour of the attacking side
+     * @return bitboard of the attacking pieces
      */
-    private static boolean isAttackedAlongRay(Position position,
-                                              Square square, Colour colour, int dFile, int dRank,
-                                              Set<PieceType> pieceTypes) {
-
-        int rank = square.getRank();
-        int file = square.getFile();
-        boolean moreSquares = true;
-
-        while (moreSquares) {
-
-            file += dFile;
-            rank += dRank;
-
-            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
-                Piece piece = position.getPiece(rank, file);
-                if (piece != null) {
-                    moreSquares = false;
-                    if (piece.getColour() == colour) {
-                        if (pieceTypes.contains(piece.getType())) {
-                            return true;
-                        }
-                    }
-                }
-            } else {
-                moreSquares = false;
-            }
-        }
-        return false;
+    public static long attackersTo(Position position, Square square, Colour colour) {
+        // read from the bitboards directly, copying the position would cost more than the lookups
+        int index = square.getIndex();
+        long occupied = position.getOccupiedSquares();
+        long queens = position.getPieces(QUEEN, colour);
+        return SlidingAttacks.bishop(index, occupied) & (queens | position.getPieces(BISHOP, colour))
+                | SlidingAttacks.rook(index, occupied) & (queens | position.getPieces(ROOK, colour))
+                | LeaperAttacks.knight(index) & position.getPieces(KNIGHT, colour)
+                | LeaperAttacks.pawn(index, colour.otherColour()) & position.getPieces(PAWN, colour)
+                | LeaperAttacks.king(index) & position.getPieces(KING, colour);
+    }
+
+    /**
+     * Returns the pieces of the given colour which attack the square. Occupancy of the square itself does not
+     * matter. The number of attackers is {@code Long.bitCount} of the result, the square of each one
+     * {@code Long.numberOfTrailingZeros} of a single bit.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   index of the square, 0-63
+     * @param colour   colour of the attacking side
+     * @return bitboard of the attacking pieces, e.g. the pieces giving check if the square is the king's
+     */
+    public static long attackersTo(MutablePosition position, int square, Colour colour) {
+        return attackersTo(position, square, colour, position.getOccupiedSquares());
+    }
+
+    /**
+     * Returns the pieces of the given colour which attack the square, with the given squares blocking sliding
+     * pieces. Pieces which are not in {@code occupied} (e.g. removed in a sequence of captures) still count as
+     * attackers, the caller masks them out if needed.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   index of the square, 0-63
+     * @param colour   colour of the attacking side
+     * @param occupied squares which block sliding pieces
+     * @return bitboard of the attacking pieces
+     */
+    static long attackersTo(MutablePosition position, int square, Colour colour, long occupied) {
+        long queens = position.getPieces(QUEEN, colour);
+        long attackers = SlidingAttacks.bishop(square, occupied) & (queens | position.getPieces(BISHOP, colour))
+                | SlidingAttacks.rook(square, occupied) & (queens | position.getPieces(ROOK, colour));
+
+        attackers |= LeaperAttacks.knight(square) & position.getPieces(KNIGHT, colour)
+                | LeaperAttacks.pawn(square, colour.otherColour()) & position.getPieces(PAWN, colour)
+                | LeaperAttacks.king(square) & position.getPieces(KING, colour);
+
+        return attackers;
     }
 
     /**
-     * Literal translation of {@code istFeldAngegriffenVonFeld}: whether {@code square} is attacked
-     * from the square one step away in direction ({@code dFile}, {@code dRank}) — i.e. whether that
-     * neighbour square contains a piece of {@code colour} and {@code pieceType} (knight, king, pawn).
+     * Returns the pieces of both colours which attack the square, with the given squares blocking sliding
+     * pieces, see {@link #attackersTo(MutablePosition, int, Colour, long)}.
+     *
+     * @param position position to read attacking pieces from
+     * @param square   index of the square, 0-63
+     * @param occupied squares which block sliding pieces
+     * @return bitboard of the attacking pieces
      */
-    private static boolean isSquareAttackedFromSquare(Position position,
-                                                        Square square, Colour colour, int dFile,
-                                                        int dRank, PieceType pieceType) {
-
-        int file = square.getFile() + dFile;
-        int rank = square.getRank() + dRank;
-
-        if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
-            Piece piece = position.getPiece(rank, file);
-            if (piece != null) {
-                if (piece.getColour() == colour) {
-                    if (piece.getType() == pieceType) {
-                        return true;
-                    }
-                }
+    static long attackersTo(MutablePosition position, int square, long occupied) {
+        long queens = position.getPieces(QUEEN, Colour.WHITE) | position.getPieces(QUEEN, Colour.BLACK);
+        long bishops = position.getPieces(BISHOP, Colour.WHITE) | position.getPieces(BISHOP, Colour.BLACK);
+        long rooks = position.getPieces(ROOK, Colour.WHITE) | position.getPieces(ROOK, Colour.BLACK);
+        long knights = position.getPieces(KNIGHT, Colour.WHITE) | position.getPieces(KNIGHT, Colour.BLACK);
+        long kings = position.getPieces(KING, Colour.WHITE) | position.getPieces(KING, Colour.BLACK);
+
+        return SlidingAttacks.bishop(square, occupied) & (queens | bishops)
+                | SlidingAttacks.rook(square, occupied) & (queens | rooks)
+                | LeaperAttacks.knight(square) & knights
+                | LeaperAttacks.king(square) & kings
+                | LeaperAttacks.pawn(square, Colour.BLACK) & position.getPieces(PAWN, Colour.WHITE)
+                | LeaperAttacks.pawn(square, Colour.WHITE) & position.getPieces(PAWN, Colour.BLACK);
+    }
+
+    /**
+     * Returns the pieces of the given colour which are pinned to their king, i.e. which stand alone between
+     * the king and an opponent rook, bishop or queen on the same line.
+     *
+     * @param position   position to examine
+     * @param kingSquare index of the square of the king
+     * @param colour     colour of the king and of the pinned pieces
+     * @return bitboard of the pinned pieces
+     */
+    static long pinnedPieces(MutablePosition position, int kingSquare, Colour colour) {
+        Colour opponent = colour.otherColour();
+        return blockers(position, kingSquare, opponent, position.getOccupiedSquares(opponent));
+    }
+
+    /**
+     * Returns the pieces of the given colour which stand alone between an own rook, bishop or queen and the
+     * opponent king. Moving such a piece off the line gives check (discovered check).
+     *
+     * @param position   position to examine
+     * @param kingSquare index of the square of the opponent king
+     * @param colour     colour of the sliding pieces and of the candidates
+     * @return bitboard of the discovered check candidates
+     */
+    static long discoveredCheckCandidates(MutablePosition position, int kingSquare, Colour colour) {
+        return blockers(position, kingSquare, colour, position.getOccupiedSquares(colour.otherColour()));
+    }
+
+    /**
+     * Returns the pieces which stand alone between the king and a sliding piece of the given colour.
+     *
+     * @param position   position to examine
+     * @param kingSquare index of the square of the king
+     * @param sliders    colour of the rooks, bishops and queens
+     * @param opaque     pieces which block the rays in any case; the others are only counted
+     * @return bitboard of the pieces in between, all of them not in {@code opaque}
+     */
+    private static long blockers(MutablePosition position, int kingSquare, Colour sliders, long opaque) {
+        long queens = position.getPieces(QUEEN, sliders);
+
+        // sliding pieces which would attack the king if only the opaque pieces were on the board
+        long attackers = SlidingAttacks.rook(kingSquare, opaque)
+                & (queens | position.getPieces(ROOK, sliders))
+                | SlidingAttacks.bishop(kingSquare, opaque)
+                & (queens | position.getPieces(BISHOP, sliders));
+
+        long occupied = position.getOccupiedSquares();
+        long blockers = 0;
+        while (attackers != 0) {
+            int attacker = Long.numberOfTrailingZeros(attackers);
+            attackers &= attackers - 1;
+            long between = Rays.between(kingSquare, attacker) & occupied;
+            if (between != 0 && (between & (between - 1)) == 0) {
+                // exactly one piece in between, a transparent one (opaque pieces block the ray above)
+                blockers |= between;
             }
         }
-        return false;
+        return blockers;
     }
-
 }
@@ -41,8 +41,8 @@ public class MoveParser {
 
         if (input.matches("[a-h][1-8][a-h][1-8][qrnb]?")) {
 
-            Square from = new Square(input.substring(0, 2));
-            Square to = new Square(input.substring(2, 4));
+            Square from = Square.of(input.substring(0, 2));
+            Square to = Square.of(input.substring(2, 4));
             boolean capture = false;
             PieceType promotionPieceType = null;
             Piece piece = position.getPiece(from);
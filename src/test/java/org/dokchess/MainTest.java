@@ -23,6 +23,9 @@ import org.dokchess.textui.xboard.XBoard;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
 public class MainTest {
 
     @Test
@@ -30,4 +33,23 @@ public class MainTest {
         XBoard xboard = Main.buildXBoard();
         Assert.assertNotNull(xboard);
     }
+
+    @Test
+    public void perftSubcommand() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = Main.perft(new String[]{"divide", "2", "8/8/8/8/8/8/8/K1k5", "w", "-", "-", "0", "1"},
+                new PrintStream(out));
+        Assert.assertEquals(0, exitCode);
+        Assert.assertTrue(out.toString().startsWith("a1a2 3"));
+        Assert.assertTrue(out.toString().contains("3 nodes"));
+
+        Assert.assertEquals(2, Main.perft(new String[]{"perft"}, new PrintStream(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    public void perftWithInvalidDepth() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(2, Main.perft(new String[]{"perft", "suite", "0"}, new PrintStream(out)));
+        Assert.assertTrue(out.toString().startsWith("Invalid depth 0"));
+    }
 }
@@ -47,7 +47,7 @@ public class ForsythEdwardsNotationTest {
     public void enPassantToString() {
 
         Position s = new Position();
-        Move z = new Move(new Piece(PAWN, WHITE), e2, e4);
+        Move z = new Move(Piece.of(PAWN, WHITE), e2, e4);
         s = s.performMove(z);
 
         String fen = ForsythEdwardsNotation.toString(s);
@@ -65,7 +65,7 @@ public class ForsythEdwardsNotationTest {
         ForsythEdwardsNotation.fromString(pos, fen);
 
         Assert.assertEquals(WHITE, pos.getToMove());
-        Assert.assertEquals(new Piece(QUEEN, WHITE), pos.getPiece(h5));
-        Assert.assertEquals(new Piece(PAWN, BLACK), pos.getPiece(e5));
+        Assert.assertEquals(Piece.of(QUEEN, WHITE), pos.getPiece(h5));
+        Assert.assertEquals(Piece.of(PAWN, BLACK), pos.getPiece(e5));
     }
 }
@@ -29,7 +29,7 @@ import static org.dokchess.domain.Squares.e4;
 
 public class MoveTest {
 
-    private static final Piece WHITE_PAWN = new Piece(PAWN, WHITE);
+    private static final Piece WHITE_PAWN = Piece.of(PAWN, WHITE);
 
     @Test
     public void testEqualsHashcode() {
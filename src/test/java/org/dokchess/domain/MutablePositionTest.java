@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.domain;
+
+import org.junit.Test;
+
+import static org.dokchess.domain.Colour.BLACK;
+import static org.dokchess.domain.Colour.WHITE;
+import static org.dokchess.domain.PieceType.*;
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.*;
+
+public class MutablePositionTest {
+
+    private static final Piece WHITE_PAWN = Piece.of(PAWN, WHITE);
+    private static final Piece WHITE_KING = Piece.of(KING, WHITE);
+    private static final Piece WHITE_KNIGHT = Piece.of(KNIGHT, WHITE);
+    private static final Piece BLACK_KING = Piece.of(KING, BLACK);
+
+    @Test
+    public void makeMoveEqualsPerformMove() {
+        Position pos = new Position("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        Move[] moves = {
+                new Move(WHITE_PAWN, e5, d6, true),
+                new Move(WHITE_KING, e1, g1),
+                new Move(WHITE_KING, e1, c1),
+                new Move(WHITE_PAWN, b7, a8, true, KNIGHT),
+                new Move(WHITE_PAWN, b7, b8, QUEEN)
+        };
+
+        for (Move move : moves) {
+            MutablePosition board = new MutablePosition(pos);
+            board.makeMove(move);
+            Position expected = pos.performMove(move);
+            assertEquals(move.toString(), expected.toString(), board.toPosition().toString());
+            assertEquals(move.toString(), expected.getHashKey(), board.getHashKey());
+        }
+    }
+
+    @Test
+    public void unmakeMoveRestoresPosition() {
+        String fen = "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1";
+        MutablePosition board = new MutablePosition(new Position(fen));
+        long hashKey = board.getHashKey();
+
+        board.makeMove(new Move(WHITE_PAWN, e5, d6, true));
+        board.makeMove(new Move(BLACK_KING, e8, c8));
+        board.makeMove(new Move(WHITE_PAWN, b7, b8, QUEEN));
+        board.unmakeMove();
+        board.unmakeMove();
+        board.unmakeMove();
+
+        assertEquals(fen, board.toPosition().toString());
+        assertEquals(hashKey, board.getHashKey());
+        assertEquals(d6, board.getEnPassantSquare());
+        assertEquals(WHITE, board.getToMove());
+    }
+
+    @Test
+    public void deepMoveSequenceGrowsUndoStack() {
+        Position start = new Position();
+        MutablePosition board = new MutablePosition(start);
+
+        Move out = new Move(WHITE_KNIGHT, g1, f3);
+        Move back = new Move(WHITE_KNIGHT, f3, g1);
+        Move blackOut = new Move(Piece.of(KNIGHT, BLACK), g8, f6);
+        Move blackBack = new Move(Piece.of(KNIGHT, BLACK), f6, g8);
+        for (int i = 0; i < 100; ++i) {
+            board.makeMove(out);
+            board.makeMove(blackOut);
+            board.makeMove(back);
+            board.makeMove(blackBack);
+        }
+        assertEquals(start.getHashKey(), board.getHashKey());
+
+        for (int i = 0; i < 400; ++i) {
+            board.unmakeMove();
+        }
+        assertEquals(start.toString(), board.toPosition().toString());
+    }
+
+    @Test
+    public void kingSquaresAndMailboxFollowMoves() {
+        MutablePosition board = new MutablePosition(
+                new Position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+        assertEquals(e1.getIndex(), board.getKingSquare(WHITE));
+        assertEquals(e8.getIndex(), board.getKingSquare(BLACK));
+
+        board.makeMove(new Move(WHITE_KING, e1, g1));
+        assertEquals(g1.getIndex(), board.getKingSquare(WHITE));
+        assertEquals(MutablePosition.pieceIndex(ROOK, WHITE), board.getPieceIndex(f1.getIndex()));
+        assertEquals(MutablePosition.NO_PIECE, board.getPieceIndex(h1.getIndex()));
+
+        board.unmakeMove();
+        assertEquals(e1.getIndex(), board.getKingSquare(WHITE));
+        assertEquals(MutablePosition.pieceIndex(ROOK, WHITE), board.getPieceIndex(h1.getIndex()));
+        assertEquals(MutablePosition.NO_PIECE, board.getPieceIndex(f1.getIndex()));
+    }
+
+    @Test
+    public void unmakeMoveRestoresCountersAndHistory() {
+        Move out = new Move(WHITE_KNIGHT, g1, f3);
+        Move blackOut = new Move(Piece.of(KNIGHT, BLACK), g8, f6);
+        Move back = new Move(WHITE_KNIGHT, f3, g1);
+        Move blackBack = new Move(Piece.of(KNIGHT, BLACK), f6, g8);
+
+        MutablePosition board = new MutablePosition(new Position());
+        board.makeMove(out);
+        board.makeMove(blackOut);
+        board.makeMove(back);
+        board.makeMove(blackBack);
+        assertTrue(board.isRepetition());
+        assertEquals(4, board.getHalfmoveClock());
+        assertEquals(3, board.getFullmoveNumber());
+
+        board.unmakeMove();
+        assertFalse(board.isRepetition());
+        assertEquals(3, board.getHalfmoveClock());
+        assertEquals(2, board.getFullmoveNumber());
+
+        board.unmakeMove();
+        board.unmakeMove();
+        board.unmakeMove();
+        assertEquals(new Position().toString(), board.toPosition().toString());
+    }
+}
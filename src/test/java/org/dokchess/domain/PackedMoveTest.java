@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.domain;
+
+import org.junit.Test;
+
+import static org.dokchess.domain.Colour.BLACK;
+import static org.dokchess.domain.Colour.WHITE;
+import static org.dokchess.domain.PieceType.*;
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.*;
+
+public class PackedMoveTest {
+
+    private static final Piece WHITE_PAWN = Piece.of(PAWN, WHITE);
+    private static final Piece WHITE_KING = Piece.of(KING, WHITE);
+
+    @Test
+    public void fieldsOfPromotionWithCapture() {
+        int pawn = MutablePosition.pieceIndex(PAWN, BLACK);
+        int rook = MutablePosition.pieceIndex(ROOK, WHITE);
+        int move = PackedMove.createPromotion(g2.getIndex(), h1.getIndex(), pawn, rook, KNIGHT);
+
+        assertEquals(g2.getIndex(), PackedMove.getFrom(move));
+        assertEquals(h1.getIndex(), PackedMove.getTo(move));
+        assertEquals(pawn, PackedMove.getPiece(move));
+        assertEquals(rook, PackedMove.getCapturedPiece(move));
+        assertTrue(PackedMove.isCapture(move));
+        assertEquals(KNIGHT, PackedMove.getPromotion(move));
+        assertFalse(PackedMove.isEnPassant(move));
+        assertFalse(PackedMove.isCastling(move));
+    }
+
+    @Test
+    public void quietMove() {
+        int knight = MutablePosition.pieceIndex(KNIGHT, WHITE);
+        int move = PackedMove.create(g1.getIndex(), f3.getIndex(), knight, MutablePosition.NO_PIECE);
+
+        assertFalse(PackedMove.isCapture(move));
+        assertEquals(MutablePosition.NO_PIECE, PackedMove.getCapturedPiece(move));
+        assertFalse(PackedMove.isPromotion(move));
+        assertNull(PackedMove.getPromotion(move));
+        assertNotEquals(PackedMove.NO_MOVE, move);
+    }
+
+    @Test
+    public void fromMoveAndBack() {
+        MutablePosition board = new MutablePosition(
+                new Position("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1"));
+
+        Move enPassant = new Move(WHITE_PAWN, e5, d6, true);
+        int packed = PackedMove.fromMove(enPassant, board);
+        assertTrue(PackedMove.isEnPassant(packed));
+        assertEquals(MutablePosition.pieceIndex(PAWN, BLACK), PackedMove.getCapturedPiece(packed));
+        assertEquals(enPassant, PackedMove.toMove(packed));
+
+        Move castling = new Move(WHITE_KING, e1, c1);
+        packed = PackedMove.fromMove(castling, board);
+        assertTrue(PackedMove.isCastling(packed));
+        assertEquals(castling, PackedMove.toMove(packed));
+
+        Move promotion = new Move(WHITE_PAWN, b7, a8, true, QUEEN);
+        packed = PackedMove.fromMove(promotion, board);
+        assertEquals(MutablePosition.pieceIndex(ROOK, BLACK), PackedMove.getCapturedPiece(packed));
+        assertEquals(promotion, PackedMove.toMove(packed));
+    }
+}
@@ -31,10 +31,16 @@ public class PieceTest {
     @Test
     public void toStringTest() {
 
-        Piece whitePawn = new Piece(PAWN, WHITE);
+        Piece whitePawn = Piece.of(PAWN, WHITE);
         Assert.assertEquals("WHITE PAWN", whitePawn.toString());
 
-        Piece blackQueen = new Piece(QUEEN, BLACK);
+        Piece blackQueen = Piece.of(QUEEN, BLACK);
         Assert.assertEquals("BLACK QUEEN", blackQueen.toString());
     }
+
+    @Test
+    public void factoryMethodReturnsSameInstance() {
+        Assert.assertSame(Piece.of(QUEEN, BLACK), Piece.of(QUEEN, BLACK));
+        Assert.assertNotSame(Piece.of(QUEEN, BLACK), Piece.of(QUEEN, WHITE));
+    }
 }
@@ -33,14 +33,18 @@ import static org.junit.Assert.*;
 
 public class PositionTest {
 
-    private static final Piece WHITE_PAWN = new Piece(PAWN,
+    private static final Piece WHITE_PAWN = Piece.of(PAWN,
             WHITE);
-    private static final Piece WHITE_QUEEN = new Piece(QUEEN,
+    private static final Piece WHITE_QUEEN = Piece.of(QUEEN,
             WHITE);
-    private static final Piece WHITE_KING = new Piece(KING,
+    private static final Piece WHITE_KING = Piece.of(KING,
             WHITE);
-    private static final Piece WHITE_ROOK = new Piece(ROOK,
+    private static final Piece WHITE_ROOK = Piece.of(ROOK,
             WHITE);
+    private static final Piece BLACK_PAWN = Piece.of(PAWN,
+            BLACK);
+    private static final Piece BLACK_KING = Piece.of(KING,
+            BLACK);
 
     @Test
     public void pawnAdvancesOne() {
@@ -137,6 +141,22 @@ public class PositionTest {
         assertFalse(afterKing.castlingAllowed(WHITE_QUEENSIDE));
     }
 
+    /**
+     * A rook is captured on its home square; the opponent loses castling on that wing.
+     */
+    @Test
+    public void castlingRightsRemovedWhenRookIsCaptured() {
+        Position position = new Position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+
+        Move rookTakesRook = new Move(WHITE_ROOK, h1, h8, true);
+        Position newPos = position.performMove(rookTakesRook);
+        assertFalse(newPos.castlingAllowed(WHITE_KINGSIDE));
+        assertTrue(newPos.castlingAllowed(WHITE_QUEENSIDE));
+        assertFalse(newPos.castlingAllowed(BLACK_KINGSIDE));
+        assertTrue(newPos.castlingAllowed(BLACK_QUEENSIDE));
+        assertEquals(new Position("r3k2R/8/8/8/8/8/8/R3K3 b Qq - 0 1").getHashKey(), newPos.getHashKey());
+    }
+
 
     @Test
     public void squaresWithWhitePieces() {
@@ -177,4 +197,97 @@ public class PositionTest {
         Square whiteSquare = position.findSquareWithKing(WHITE);
         assertNull(whiteSquare);
     }
+
+    /**
+     * Hash keys match the reference values of the Polyglot book format, including en passant.
+     */
+    @Test
+    public void hashKeysMatchPolyglotReference() {
+        Position pos = new Position();
+        assertEquals(0x463b96181691fc9cL, pos.getHashKey());
+
+        pos = pos.performMove(new Move(WHITE_PAWN, e2, e4));
+        assertEquals(0x823c9b50fd114196L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(BLACK_PAWN, d7, d5));
+        assertEquals(0x0756b94461c50fb0L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(WHITE_PAWN, e4, e5));
+        assertEquals(0x662fafb965db29d4L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(BLACK_PAWN, f7, f5));
+        assertEquals(0x22a48b5a8e47ff78L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(WHITE_KING, e1, e2));
+        assertEquals(0x652a607ca3f242c1L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(BLACK_KING, e8, f7));
+        assertEquals(0x00fdd303c946bdd9L, pos.getHashKey());
+    }
+
+    /**
+     * En passant capture and rook move, compared with the Polyglot reference values.
+     */
+    @Test
+    public void hashKeyAfterEnPassantCapture() {
+        Position pos = new Position();
+        pos = pos.performMove(new Move(WHITE_PAWN, a2, a4));
+        pos = pos.performMove(new Move(BLACK_PAWN, b7, b5));
+        pos = pos.performMove(new Move(WHITE_PAWN, h2, h4));
+        pos = pos.performMove(new Move(BLACK_PAWN, b5, b4));
+        pos = pos.performMove(new Move(WHITE_PAWN, c2, c4));
+        assertEquals(0x3c8123ea7b067637L, pos.getHashKey());
+
+        pos = pos.performMove(new Move(BLACK_PAWN, b4, c3, true));
+        assertNull(pos.getPiece(c4));
+        pos = pos.performMove(new Move(WHITE_ROOK, a1, a3));
+        assertEquals(0x5c3f9b829b279560L, pos.getHashKey());
+    }
+
+    /**
+     * The incrementally updated key equals the key of the same position set up from FEN.
+     */
+    @Test
+    public void incrementalHashKeyEqualsKeyFromFen() {
+        Position pos = new Position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        pos = pos.performMove(new Move(WHITE_KING, e1, g1));
+
+        Position fromFen = new Position(pos.toString());
+        assertEquals(fromFen.getHashKey(), pos.getHashKey());
+        assertFalse(new Position().getHashKey() == pos.getHashKey());
+    }
+
+    @Test
+    public void countersFromFenAndAfterMoves() {
+        Position position = new Position("4k3/8/8/8/8/8/4P3/R3K3 b - - 12 40");
+        assertEquals(12, position.getHalfmoveClock());
+        assertEquals(40, position.getFullmoveNumber());
+
+        position = position.performMove(new Move(BLACK_KING, e8, d8));
+        assertEquals(13, position.getHalfmoveClock());
+        assertEquals(41, position.getFullmoveNumber());
+
+        position = position.performMove(new Move(WHITE_PAWN, e2, e4));
+        assertEquals(0, position.getHalfmoveClock());
+        assertEquals(41, position.getFullmoveNumber());
+        assertEquals("3k4/8/8/8/4P3/8/8/R3K3 b - e3 0 41", position.toString());
+    }
+
+    @Test
+    public void repetitionAfterKnightMovesBackAndForth() {
+        Piece whiteKnight = Piece.of(KNIGHT, WHITE);
+        Piece blackKnight = Piece.of(KNIGHT, BLACK);
+        Position position = new Position();
+
+        position = position.performMove(new Move(whiteKnight, g1, f3));
+        position = position.performMove(new Move(blackKnight, g8, f6));
+        position = position.performMove(new Move(whiteKnight, f3, g1));
+        assertFalse(position.isRepetition());
+        position = position.performMove(new Move(blackKnight, f6, g8));
+        assertTrue(position.isRepetition());
+
+        // a pawn move ends the sequence of positions which may repeat
+        position = position.performMove(new Move(WHITE_PAWN, e2, e3));
+        assertFalse(position.isRepetition());
+    }
 }
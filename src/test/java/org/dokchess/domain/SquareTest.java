@@ -26,22 +26,22 @@ public class SquareTest {
     @Test
     public void stringConstruction() {
 
-        Square a8 = new Square("a8");
+        Square a8 = Square.of("a8");
         Assert.assertEquals(0, a8.getRank());
         Assert.assertEquals(0, a8.getFile());
         Assert.assertEquals("a8", a8.toString());
 
-        Square h8 = new Square("h8");
+        Square h8 = Square.of("h8");
         Assert.assertEquals(0, h8.getRank());
         Assert.assertEquals(7, h8.getFile());
         Assert.assertEquals("h8", h8.toString());
 
-        Square a1 = new Square("a1");
+        Square a1 = Square.of("a1");
         Assert.assertEquals(7, a1.getRank());
         Assert.assertEquals(0, a1.getFile());
         Assert.assertEquals("a1", a1.toString());
 
-        Square h1 = new Square("h1");
+        Square h1 = Square.of("h1");
         Assert.assertEquals(7, h1.getRank());
         Assert.assertEquals(7, h1.getFile());
         Assert.assertEquals("h1", h1.toString());
@@ -50,24 +50,24 @@ public class SquareTest {
     @Test
     public void coordinateConstruction() {
 
-        Square a8 = new Square(0, 0);
+        Square a8 = Square.of(0, 0);
         Assert.assertEquals("a8", a8.toString());
 
-        Square h8 = new Square(0, 7);
+        Square h8 = Square.of(0, 7);
         Assert.assertEquals("h8", h8.toString());
 
-        Square a1 = new Square(7, 0);
+        Square a1 = Square.of(7, 0);
         Assert.assertEquals("a1", a1.toString());
 
-        Square h1 = new Square(7, 7);
+        Square h1 = Square.of(7, 7);
         Assert.assertEquals("h1", h1.toString());
     }
 
     @Test
     public void compareWithEquals() {
-        Square a1 = new Square("a1");
-        Square h1 = new Square("h1");
-        Square otherH1 = new Square("h1");
+        Square a1 = Square.of("a1");
+        Square h1 = Square.of("h1");
+        Square otherH1 = Square.of("h1");
 
         Assert.assertFalse(a1.equals(h1));
         Assert.assertFalse(a1.equals(null));
@@ -79,8 +79,16 @@ public class SquareTest {
 
     @Test
     public void hashCodesAreTheSame() {
-        Square h1 = new Square("h1");
-        Square otherH1 = new Square("h1");
+        Square h1 = Square.of("h1");
+        Square otherH1 = Square.of("h1");
         Assert.assertTrue(h1.hashCode() == otherH1.hashCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void factoryMethodsReturnSameInstance() {
+        Square e4 = Square.of("e4");
+        Assert.assertSame(e4, Square.of(4, 4));
+        Assert.assertSame(e4, Square.of(e4.getIndex()));
+        Assert.assertSame(Squares.e4, e4);
+    }
+}
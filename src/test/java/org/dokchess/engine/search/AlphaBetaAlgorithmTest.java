@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.Position;
+import org.dokchess.engine.eval.StandardMaterialEvaluation;
+import org.dokchess.rules.DefaultChessRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Alpha-beta finds the same best moves with the same scores as minimax.
+ */
+public class AlphaBetaAlgorithmTest {
+
+    /**
+     * Positions of the minimax tests (mate, stalemate, tactics) and a few more.
+     */
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 0 1",
+            "1k6/1p5R/8/8/1q6/p7/P7/K7 w - - 0 1",
+            "k7/8/1KN5/8/8/8/8/8 b - - 0 1",
+            "8/3qkb2/8/8/4KB2/5Q2/8/8 b - - 0 1",
+            "8/5k2/2r1r3/8/3P4/6P1/5PK1/8 w - - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1",
+    };
+
+    @Test
+    public void sameResultAsMinimax() {
+        MinimaxAlgorithm minimax = new MinimaxAlgorithm();
+        AlphaBetaAlgorithm alphaBeta = new AlphaBetaAlgorithm();
+        for (MinimaxAlgorithm algorithm : new MinimaxAlgorithm[]{minimax, alphaBeta}) {
+            algorithm.setEvaluation(new StandardMaterialEvaluation());
+            algorithm.setChessRules(new DefaultChessRules());
+        }
+
+        for (String fen : POSITIONS) {
+            Position position = new Position(fen);
+            for (int depth = 1; depth <= 3; ++depth) {
+                minimax.setDepth(depth);
+                alphaBeta.setDepth(depth);
+
+                RatedMove expected = minimax.determineBestRatedMove(position);
+                RatedMove actual = alphaBeta.determineBestRatedMove(position);
+
+                String message = fen + " depth " + depth;
+                if (expected == null) {
+                    // stalemate
+                    Assert.assertNull(message, actual);
+                    continue;
+                }
+                Assert.assertEquals(message, expected.getRating(), actual.getRating());
+                Assert.assertEquals(message, expected.getMove(), actual.getMove());
+            }
+        }
+    }
+
+    @Test
+    public void mateInOneAtDepthFour() {
+        AlphaBetaAlgorithm alphaBeta = new AlphaBetaAlgorithm();
+        alphaBeta.setEvaluation(new StandardMaterialEvaluation());
+        alphaBeta.setChessRules(new DefaultChessRules());
+        alphaBeta.setDepth(4);
+
+        RatedMove best = alphaBeta.determineBestRatedMove(new Position("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"));
+        Assert.assertEquals("R a1-a8", best.getMove().toString());
+        // the mated position is one ply below the root
+        Assert.assertEquals(MinimaxAlgorithm.CHECKMATE_SCORE - 1, best.getRating());
+    }
+
+    @Test
+    public void quiescenceSearchSeesTheRecapture() {
+        // the pawn on d5 is protected, at depth 1 without quiescence search the queen takes it
+        Position position = new Position("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1");
+        AlphaBetaAlgorithm alphaBeta = new AlphaBetaAlgorithm();
+        alphaBeta.setEvaluation(new StandardMaterialEvaluation());
+        alphaBeta.setChessRules(new DefaultChessRules());
+        alphaBeta.setDepth(1);
+        Assert.assertEquals("Q d1xd5", alphaBeta.determineBestRatedMove(position).getMove().toString());
+
+        alphaBeta.setQuiescenceSearch(true);
+        RatedMove best = alphaBeta.determineBestRatedMove(position);
+        Assert.assertFalse(best.getMove().isCapture());
+        Assert.assertEquals(7, best.getRating());
+
+        alphaBeta.setSeePruning(true);
+        alphaBeta.setQuiescenceChecks(true);
+        Assert.assertFalse(alphaBeta.determineBestRatedMove(position).getMove().isCapture());
+    }
+
+    @Test
+    public void mateOnTheHundredthHalfMoveIsNoDraw() {
+        // Ra8# sets the halfmove clock to 100, the mate counts nevertheless
+        Position position = new Position("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 99 80");
+        MinimaxAlgorithm minimax = new MinimaxAlgorithm();
+        AlphaBetaAlgorithm alphaBeta = new AlphaBetaAlgorithm();
+        AlphaBetaAlgorithm quiescence = new AlphaBetaAlgorithm();
+        quiescence.setQuiescenceSearch(true);
+        for (MinimaxAlgorithm algorithm : new MinimaxAlgorithm[]{minimax, alphaBeta, quiescence}) {
+            algorithm.setEvaluation(new StandardMaterialEvaluation());
+            algorithm.setChessRules(new DefaultChessRules());
+            algorithm.setDepth(1);
+
+            RatedMove best = algorithm.determineBestRatedMove(position);
+            Assert.assertEquals("R a1-a8", best.getMove().toString());
+            Assert.assertEquals(MinimaxAlgorithm.CHECKMATE_SCORE - 1, best.getRating());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.Move;
+import org.dokchess.domain.Position;
+import org.dokchess.engine.eval.StandardMaterialEvaluation;
+import org.dokchess.rules.DefaultChessRules;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class IterativeDeepeningSearchTest {
+
+    private IterativeDeepeningSearch search;
+
+    @Before
+    public void setup() {
+        search = new IterativeDeepeningSearch();
+        search.setEvaluation(new StandardMaterialEvaluation());
+        search.setChessRules(new DefaultChessRules());
+    }
+
+    @After
+    public void tearDown() {
+        search.close();
+    }
+
+    @Test
+    public void oneMovePerIteration() throws InterruptedException {
+        search.setMaxDepth(3);
+        MoveCollector collector = new MoveCollector();
+
+        search.searchMove(new Position(), collector);
+
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertEquals(3, collector.moves.size());
+    }
+
+    @Test
+    public void timeLimitStopsTheSearch() throws InterruptedException {
+        search.setTimeLimit(200);
+        MoveCollector collector = new MoveCollector();
+
+        search.searchMove(new Position(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), collector);
+
+        // without the time limit, the search would run to the maximum depth of 64, far beyond the wait
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertFalse(collector.moves.isEmpty());
+        Assert.assertTrue(collector.moves.size() < 64);
+    }
+
+    @Test
+    public void nodeLimitStopsTheSearch() throws InterruptedException {
+        search.setNodeLimit(1000);
+        MoveCollector collector = new MoveCollector();
+
+        search.searchMove(new Position(), collector);
+
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertFalse(collector.moves.isEmpty());
+    }
+
+    @Test
+    public void stopsWhenMateIsFound() throws InterruptedException {
+        MoveCollector collector = new MoveCollector();
+
+        search.searchMove(new Position("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"), collector);
+
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertEquals("R a1-a8", collector.moves.get(collector.moves.size() - 1).toString());
+    }
+
+    @Test
+    public void cancelledSearchCompletesWithTheBestMoveSoFar() throws InterruptedException {
+        MoveCollector collector = new MoveCollector();
+
+        search.searchMove(new Position(), collector);
+        search.cancelSearch();
+
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertFalse(collector.moves.isEmpty());
+    }
+
+    @Test
+    public void quiescenceNodesCountedSeparately() throws InterruptedException {
+        search.setMaxDepth(3);
+        MoveCollector collector = new MoveCollector();
+        search.searchMove(new Position(), collector);
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertTrue(search.getNodes() > 0);
+        Assert.assertEquals(0, search.getQuiescenceNodes());
+
+        search.setQuiescenceSearch(true);
+        collector = new MoveCollector();
+        search.searchMove(new Position(), collector);
+        Assert.assertTrue(collector.awaitCompletion());
+        Assert.assertTrue(search.getNodes() > 0);
+        Assert.assertTrue(search.getQuiescenceNodes() > 0);
+    }
+
+    /**
+     * Remembers the published moves.
+     */
+    static class MoveCollector implements Observer<Move> {
+
+        private final List<Move> moves = new ArrayList<>();
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onCompleted() {
+            completed.countDown();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onNext(Move move) {
+            moves.add(move);
+        }
+
+        boolean awaitCompletion() throws InterruptedException {
+            return completed.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.PieceType;
+import org.dokchess.domain.Position;
+import org.dokchess.rules.ChessRules;
+import org.dokchess.rules.DefaultChessRules;
+import org.dokchess.rules.Perft;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StagedMovesTest {
+
+    private final ChessRules chessRules = new DefaultChessRules();
+
+    @Test
+    public void stagesInOrder() {
+        // pawn b7 can capture a rook or promote, the queen can capture a pawn or a knight
+        Position position = new Position("r1n1k3/1P6/8/3p4/8/8/3Q4/4K2n w - - 0 1");
+        MutablePosition board = new MutablePosition(position);
+        StagedMoves moves = new StagedMoves(chessRules);
+        moves.reset(board, PackedMove.NO_MOVE);
+
+        // captures of the rook first (with all promotions), then the knights, then the pawn
+        for (int i = 0; i < 4; ++i) {
+            int move = moves.next();
+            assertTrue(PackedMove.isCapture(move));
+            assertEquals("a8", PackedMove.toMove(move).getTo().toString());
+        }
+        int move = moves.next();
+        while (PackedMove.isCapture(move) && PackedMove.getCapturedPiece(move) % 6 == 4) {
+            move = moves.next();
+        }
+        assertEquals("d5", PackedMove.toMove(move).getTo().toString());
+
+        // promotions without capture before the quiet moves
+        move = moves.next();
+        assertTrue(PackedMove.isPromotion(move));
+        assertFalse(PackedMove.isCapture(move));
+    }
+
+    @Test
+    public void hashMoveFirstAndNotRepeated() {
+        Position position = new Position();
+        MutablePosition board = new MutablePosition(position);
+        MoveList all = new MoveList();
+        chessRules.getLegalMoves(board, all);
+        int hashMove = all.get(all.size() - 1);
+
+        StagedMoves moves = new StagedMoves(chessRules);
+        moves.reset(board, hashMove);
+        assertEquals(hashMove, moves.next());
+        int count = 1;
+        while (moves.next() != PackedMove.NO_MOVE) {
+            count++;
+        }
+        assertEquals(20, count);
+
+        // a move which is not legal here is ignored
+        int illegal = PackedMove.create(0, 40, MutablePosition.pieceIndex(PieceType.ROOK, Colour.BLACK),
+                MutablePosition.NO_PIECE);
+        moves.reset(board, illegal);
+        assertNotEquals(illegal, moves.next());
+    }
+
+    @Test
+    public void sameMovesAsGetLegalMoves() {
+        for (Perft.ReferencePosition reference : Perft.REFERENCE_POSITIONS) {
+            MutablePosition board = new MutablePosition(new Position(reference.getFen()));
+            MoveList all = new MoveList();
+            chessRules.getLegalMoves(board, all);
+            Set<Integer> expected = new HashSet<Integer>();
+            for (int i = 0; i < all.size(); ++i) {
+                expected.add(all.get(i));
+            }
+
+            StagedMoves moves = new StagedMoves(chessRules);
+            moves.reset(board, PackedMove.NO_MOVE);
+            Set<Integer> staged = new HashSet<Integer>();
+            for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+                assertTrue(staged.add(move));
+            }
+            assertEquals(reference.getName(), expected, staged);
+        }
+    }
+
+    @Test
+    public void leastValuableAttackerFirst() {
+        // pawn, knight and queen can capture the rook on d5
+        Position position = new Position("4k3/8/8/3r4/2P5/2N5/3Q4/4K3 w - - 0 1");
+        StagedMoves moves = new StagedMoves(chessRules);
+        moves.reset(new MutablePosition(position), PackedMove.NO_MOVE);
+
+        assertEquals("c4xd5", PackedMove.toMove(moves.next()).toString());
+        assertEquals("N c3xd5", PackedMove.toMove(moves.next()).toString());
+        assertEquals("Q d2xd5", PackedMove.toMove(moves.next()).toString());
+    }
+
+    @Test
+    public void killerMovesAfterCapturesThenHistory() {
+        Position position = new Position("4k3/8/8/3p4/4P3/8/8/R3K1N1 w - - 0 1");
+        MutablePosition board = new MutablePosition(position);
+        MoveList all = new MoveList();
+        chessRules.getLegalNonCaptures(board, all);
+        int killer = all.get(0);
+        int goodHistory = all.get(all.size() - 1);
+
+        MoveOrdering ordering = new MoveOrdering();
+        ordering.cutoff(3, killer, 2, 0);
+        ordering.cutoff(5, goodHistory, 4, 1);
+        assertEquals(0.5, (double) ordering.getFirstMoveCutoffs() / ordering.getCutoffs(), 1e-9);
+
+        StagedMoves moves = new StagedMoves(chessRules);
+        moves.reset(board, PackedMove.NO_MOVE, ordering, 3);
+        assertTrue(PackedMove.isCapture(moves.next()));
+        assertEquals(killer, moves.next());
+        assertEquals(goodHistory, moves.next());
+
+        Set<Integer> rest = new HashSet<Integer>();
+        for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+            assertTrue(rest.add(move));
+        }
+        assertEquals(all.size() - 2, rest.size());
+    }
+
+    @Test
+    public void capturesOnlyWithOptionalChecks() {
+        Position position = new Position("4k3/8/8/3r4/2P5/2N5/3Q4/4K3 w - - 0 1");
+        MutablePosition board = new MutablePosition(position);
+        StagedMoves moves = new StagedMoves(chessRules);
+
+        moves.resetCaptures(board, false);
+        int count = 0;
+        for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+            assertTrue(PackedMove.isCapture(move));
+            ++count;
+        }
+        assertEquals(3, count);
+
+        // quiet checks after the captures: the queen to e2 or e3
+        Set<Integer> checks = new HashSet<Integer>();
+        moves.resetCaptures(board, true);
+        for (int move = moves.next(); move != PackedMove.NO_MOVE; move = moves.next()) {
+            if (!PackedMove.isCapture(move)) {
+                board.makeMove(move);
+                assertTrue(chessRules.isCheck(board, Colour.BLACK));
+                board.unmakeMove();
+                checks.add(PackedMove.getTo(move));
+            }
+        }
+        assertEquals(2, checks.size());
+    }
+}
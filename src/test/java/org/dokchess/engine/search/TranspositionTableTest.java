@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.engine.search;
+
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.Position;
+import org.dokchess.engine.eval.StandardMaterialEvaluation;
+import org.dokchess.rules.DefaultChessRules;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TranspositionTableTest {
+
+    private static final int MOVE = PackedMove.create(52, 36, 11, 15, PackedMove.PAWN_ADVANCES_TWO);
+
+    @Test
+    public void storedEntryIsFound() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(0x1234567890ABCDEFL, MOVE, 5, TranspositionTable.LOWER_BOUND, -42, 3);
+
+        long entry = table.probe(0x1234567890ABCDEFL);
+        Assert.assertEquals(MOVE, TranspositionTable.getMove(entry));
+        Assert.assertEquals(5, TranspositionTable.getDepth(entry));
+        Assert.assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.getBound(entry));
+        Assert.assertEquals(-42, TranspositionTable.getScore(entry, 7));
+
+        Assert.assertEquals(0, table.probe(0x1234567890ABCDEEL));
+        Assert.assertEquals(0.5, table.getHitRate(), 1e-9);
+    }
+
+    /**
+     * A mate in 2 plies from a position at ply 3 is a mate at ply 5 from the root; reached at ply 1 in another
+     * search, it is a mate at ply 3.
+     */
+    @Test
+    public void mateScoresRelativeToThePosition() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(1L, MOVE, 4, TranspositionTable.EXACT, MinimaxAlgorithm.CHECKMATE_SCORE - 5, 3);
+        table.store(2L, MOVE, 4, TranspositionTable.EXACT, -(MinimaxAlgorithm.CHECKMATE_SCORE - 5), 3);
+
+        Assert.assertEquals(MinimaxAlgorithm.CHECKMATE_SCORE - 3, TranspositionTable.getScore(table.probe(1L), 1));
+        Assert.assertEquals(-(MinimaxAlgorithm.CHECKMATE_SCORE - 3),
+                TranspositionTable.getScore(table.probe(2L), 1));
+    }
+
+    @Test
+    public void entriesOfEarlierSearchesAreReplacedFirst() {
+        TranspositionTable table = new TranspositionTable(1);
+        // all keys map to the same bucket, they differ only in the highest bits
+        long oldDeep = 1L << 60;
+        long newShallow = 2L << 60;
+        long newer = 3L << 60;
+
+        table.store(oldDeep, MOVE, 10, TranspositionTable.EXACT, 0, 0);
+        table.newSearch();
+        table.store(newShallow, MOVE, 1, TranspositionTable.EXACT, 0, 0);
+        table.store(newer, MOVE, 2, TranspositionTable.EXACT, 0, 0);
+
+        Assert.assertEquals(0, table.probe(oldDeep));
+        Assert.assertNotEquals(0, table.probe(newShallow));
+        Assert.assertNotEquals(0, table.probe(newer));
+    }
+
+    @Test
+    public void emptyMoveKeepsTheStoredMove() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(1L, MOVE, 3, TranspositionTable.LOWER_BOUND, 2, 0);
+        table.store(1L, PackedMove.NO_MOVE, 4, TranspositionTable.UPPER_BOUND, 1, 0);
+
+        Assert.assertEquals(MOVE, TranspositionTable.getMove(table.probe(1L)));
+        Assert.assertEquals(4, TranspositionTable.getDepth(table.probe(1L)));
+    }
+
+    /**
+     * Searching depth 1 to 4 with a table gives the same scores as without a table.
+     */
+    @Test
+    public void sameScoresWithTable() {
+        String[] positions = {
+                "8/3qkb2/8/8/4KB2/5Q2/8/8 b - - 0 1",
+                "8/5k2/2r1r3/8/3P4/6P1/5PK1/8 w - - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1",
+        };
+        AlphaBetaAlgorithm withTable = new AlphaBetaAlgorithm();
+        AlphaBetaAlgorithm withoutTable = new AlphaBetaAlgorithm();
+        for (AlphaBetaAlgorithm algorithm : new AlphaBetaAlgorithm[]{withTable, withoutTable}) {
+            algorithm.setEvaluation(new StandardMaterialEvaluation());
+            algorithm.setChessRules(new DefaultChessRules());
+        }
+
+        for (String fen : positions) {
+            TranspositionTable table = new TranspositionTable(1);
+            withTable.setTranspositionTable(table);
+            Position position = new Position(fen);
+            for (int depth = 1; depth <= 4; ++depth) {
+                withTable.setDepth(depth);
+                withoutTable.setDepth(depth);
+                Assert.assertEquals(fen + " depth " + depth,
+                        withoutTable.determineBestRatedMove(position).getRating(),
+                        withTable.determineBestRatedMove(position).getRating());
+            }
+            Assert.assertTrue(table.getHits() > 0);
+            Assert.assertTrue(table.getFillRate() > 0);
+        }
+    }
+}
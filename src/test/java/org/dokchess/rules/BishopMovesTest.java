@@ -33,7 +33,7 @@ import static org.dokchess.domain.Squares.*;
 
 public class BishopMovesTest {
 
-    private static final Piece LAEUFER_WEISS = new Piece(BISHOP,
+    private static final Piece LAEUFER_WEISS = Piece.of(BISHOP,
             WHITE);
 
     @Test
@@ -66,7 +66,7 @@ public class BishopMovesTest {
 
             bishopMoves.addMoveCandidates(h1, weisserLaeuferH1, zuege);
             Assert.assertEquals(7, zuege.size());
-            Square h1 = new Square("h1");
+            Square h1 = Square.of("h1");
             for (Move zug : zuege) {
                 Assert.assertEquals(h1, zug.getFrom());
             }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Position;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CachingChessRulesTest {
+
+    private static final Position KIWIPETE =
+            new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+    @Test
+    public void secondRequestIsAHit() {
+        CachingChessRules rules = new CachingChessRules(new DefaultChessRules(), 16);
+
+        assertEquals(48, rules.getLegalMoves(KIWIPETE).size());
+        assertEquals(48, rules.getLegalMoves(new Position(KIWIPETE.toString())).size());
+
+        assertEquals(1, rules.getHits());
+        assertEquals(1, rules.getMisses());
+        assertEquals(0.5, rules.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void leastRecentlyUsedPositionIsEvicted() {
+        CachingChessRules rules = new CachingChessRules(new DefaultChessRules(), 2);
+        Position start = new Position();
+        Position mate = new Position("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1");
+
+        rules.getLegalMoves(start);
+        rules.getLegalMoves(KIWIPETE);
+        rules.getLegalMoves(start);
+        rules.getLegalMoves(mate);
+        assertEquals(1, rules.getHits());
+
+        // Kiwipete was used least recently
+        rules.getLegalMoves(start);
+        rules.getLegalMoves(KIWIPETE);
+        assertEquals(2, rules.getHits());
+        assertEquals(4, rules.getMisses());
+    }
+
+    @Test
+    public void mateAndStalemateFromCachedMoves() {
+        ChessRules rules = new CachingChessRules(new DefaultChessRules(), 16);
+
+        assertTrue(rules.isCheckmate(new Position("7k/6Q1/6K1/8/8/8/8/8 b - - 0 1")));
+        assertTrue(rules.isStalemate(new Position("7k/8/6QK/8/8/8/8/8 b - - 0 1")));
+        assertFalse(rules.isCheckmate(KIWIPETE));
+        assertTrue(rules.hasLegalMove(KIWIPETE));
+    }
+}
@@ -29,8 +29,8 @@ import static org.dokchess.domain.Squares.e8;
 
 public class CastlingMovesTest {
 
-    private static final Piece WEISSER_KOENIG = new Piece(PieceType.KING, Colour.WHITE);
-    private static final Piece SCHWARZER_KOENIG = new Piece(PieceType.KING, Colour.BLACK);
+    private static final Piece WEISSER_KOENIG = Piece.of(PieceType.KING, Colour.WHITE);
+    private static final Piece SCHWARZER_KOENIG = Piece.of(PieceType.KING, Colour.BLACK);
 
     @Test
     public void weisseRochadenErlaubt() {
@@ -28,7 +28,7 @@ import static org.dokchess.domain.Squares.*;
 
 public class DamenZuegeTest {
 
-    private static final Piece DAME_WEISS = new Piece(PieceType.QUEEN,
+    private static final Piece DAME_WEISS = Piece.of(PieceType.QUEEN,
             Colour.WHITE);
 
     @Test
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.PackedMove;
+import org.dokchess.domain.Piece;
+import org.dokchess.domain.Position;
+import org.junit.Test;
+
+import static org.dokchess.domain.PieceType.*;
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks detected before the move is made.
+ */
+public class GivesCheckTest {
+
+    private final ChessRules rules = new DefaultChessRules();
+
+    private CheckInfo checkInfo;
+
+    @Test
+    public void directCheck() {
+        Position position = new Position("4k3/8/8/8/8/8/8/R3K1N1 w - - 0 1");
+        Piece rook = Piece.of(ROOK, Colour.WHITE);
+        Piece knight = Piece.of(KNIGHT, Colour.WHITE);
+
+        assertTrue(rules.givesCheck(position, new Move(rook, a1, a8)));
+        assertFalse(rules.givesCheck(position, new Move(rook, a1, a7)));
+        assertTrue(rules.givesCheck(position, new Move(knight, g1, f6)));
+        assertFalse(rules.givesCheck(position, new Move(knight, g1, f3)));
+    }
+
+    @Test
+    public void discoveredCheck() {
+        // wherever the knight goes, it uncovers the rook on e1
+        Position position = new Position("4k3/8/8/8/4N3/8/8/4RK2 w - - 0 1");
+        Piece knight = Piece.of(KNIGHT, Colour.WHITE);
+
+        assertTrue(rules.givesCheck(position, new Move(knight, e4, c3)));
+        assertTrue(rules.givesCheck(position, new Move(knight, e4, d6)));
+    }
+
+    @Test
+    public void castlingWithRookCheck() {
+        Position position = new Position("5k2/8/8/8/8/8/8/4K2R w K - 0 1");
+        assertTrue(rules.givesCheck(position, new Move(Piece.of(KING, Colour.WHITE), e1, g1)));
+    }
+
+    @Test
+    public void promotionToKnightChecks() {
+        Position position = new Position("8/3P1k2/8/8/8/8/8/K7 w - - 0 1");
+        Piece pawn = Piece.of(PAWN, Colour.WHITE);
+
+        assertTrue(rules.givesCheck(position, new Move(pawn, d7, d8, KNIGHT)));
+        assertFalse(rules.givesCheck(position, new Move(pawn, d7, d8, QUEEN)));
+    }
+
+    @Test
+    public void enPassantUncoversBishop() {
+        // the captured pawn on d5 blocked the bishop on b3
+        Position position = new Position("8/8/8/3pP3/8/1B6/8/K5k1 w - d6 0 1");
+        assertFalse(rules.givesCheck(position, new Move(Piece.of(PAWN, Colour.WHITE), e5, d6, true)));
+
+        position = new Position("6k1/8/8/3pP3/8/1B6/8/K7 w - d6 0 1");
+        assertTrue(rules.givesCheck(position, new Move(Piece.of(PAWN, Colour.WHITE), e5, d6, true)));
+    }
+
+    /**
+     * givesCheck agrees with making the move and testing for check, for all moves of the reference positions
+     * and of the positions after their first moves.
+     */
+    @Test
+    public void agreesWithMakingTheMove() {
+        for (Perft.ReferencePosition reference : Perft.REFERENCE_POSITIONS) {
+            MutablePosition board = new MutablePosition(new Position(reference.getFen()));
+            MoveList moves = new MoveList();
+            rules.getLegalMoves(board, moves);
+            for (int i = 0; i < moves.size(); ++i) {
+                board.makeMove(moves.get(i));
+                assertAllMoves(board, reference.getName());
+                board.unmakeMove();
+            }
+            assertAllMoves(board, reference.getName());
+        }
+    }
+
+    private void assertAllMoves(MutablePosition board, String name) {
+        MoveList moves = new MoveList();
+        rules.getLegalMoves(board, moves);
+        // one instance for all positions, reset like in the quiescence search
+        if (checkInfo == null) {
+            checkInfo = new CheckInfo(board);
+        } else {
+            checkInfo.reset(board);
+        }
+        for (int i = 0; i < moves.size(); ++i) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            boolean check = rules.isCheck(board, board.getToMove());
+            board.unmakeMove();
+            assertEquals(name + " " + PackedMove.toMove(move), check, checkInfo.givesCheck(move));
+            // the rules keep their check squares while the board returns to the same position
+            assertEquals(name + " " + PackedMove.toMove(move), check, rules.givesCheck(board, move));
+        }
+    }
+}
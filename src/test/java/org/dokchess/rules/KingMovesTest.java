@@ -28,7 +28,7 @@ import static org.dokchess.domain.Squares.*;
 
 public class KingMovesTest {
 
-    private static final Piece KOENIG_WEISS = new Piece(PieceType.KING,
+    private static final Piece KOENIG_WEISS = Piece.of(PieceType.KING,
             Colour.WHITE);
 
     @Test
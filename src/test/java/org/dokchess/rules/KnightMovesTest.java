@@ -36,7 +36,7 @@ import static org.dokchess.domain.Squares.*;
  */
 public class KnightMovesTest {
 
-    private static final Piece WHITE_KNIGHT = new Piece(PieceType.KNIGHT,
+    private static final Piece WHITE_KNIGHT = Piece.of(PieceType.KNIGHT,
             Colour.WHITE);
 
     @Test
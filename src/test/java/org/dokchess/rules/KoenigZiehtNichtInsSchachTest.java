@@ -32,7 +32,7 @@ import static org.dokchess.domain.Squares.*;
 
 public class KoenigZiehtNichtInsSchachTest {
 
-    private static final Piece KOENIG_WEISS = new Piece(KING,
+    private static final Piece KOENIG_WEISS = Piece.of(KING,
             Colour.WHITE);
 
     @Test
@@ -37,10 +37,10 @@ import static org.dokchess.domain.Squares.*;
  */
 public class PawnMovesTest {
 
-    private static final Piece WHITE_PAWN = new Piece(PAWN,
+    private static final Piece WHITE_PAWN = Piece.of(PAWN,
             WHITE);
 
-    private static final Piece BLACK_PAWN = new Piece(PAWN,
+    private static final Piece BLACK_PAWN = Piece.of(PAWN,
             BLACK);
 
     @Test
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Move;
+import org.dokchess.domain.Position;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+
+    private final Perft perft = new Perft(new DefaultChessRules());
+
+    @Test
+    public void startingPosition() {
+        Position position = new Position();
+        assertEquals(1, perft.perft(position, 0));
+        assertEquals(20, perft.perft(position, 1));
+        assertEquals(400, perft.perft(position, 2));
+        assertEquals(8902, perft.perft(position, 3));
+    }
+
+    @Test
+    public void divideSumsUpToPerft() {
+        Perft.ReferencePosition kiwipete = Perft.REFERENCE_POSITIONS.get(1);
+        Position position = new Position(kiwipete.getFen());
+
+        Map<Move, Long> divide = perft.divide(position, 2);
+        assertEquals(kiwipete.getNodes(1), divide.size());
+        long sum = 0;
+        for (long nodes : divide.values()) {
+            sum += nodes;
+        }
+        assertEquals(kiwipete.getNodes(2), sum);
+    }
+
+    @Test
+    public void referencePositions() {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        assertTrue(perft.runReferencePositions(3, new PrintStream(report)));
+        assertTrue(report.toString().contains("Kiwipete"));
+    }
+
+    @Test
+    public void parallelWithHash() {
+        Perft parallelPerft = new Perft(new DefaultChessRules(), 1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (Perft.ReferencePosition reference : Perft.REFERENCE_POSITIONS) {
+            Position position = new Position(reference.getFen());
+            assertEquals(reference.getName(), reference.getNodes(4),
+                    parallelPerft.perftParallel(position, 4, pool));
+        }
+        pool.shutdown();
+    }
+}
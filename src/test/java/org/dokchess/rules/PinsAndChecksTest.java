@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.Move;
+import org.dokchess.domain.MoveList;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.Piece;
+import org.dokchess.domain.Position;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.dokchess.domain.PieceType.*;
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.*;
+
+/**
+ * Legal moves with pinned pieces and with the own king in check.
+ */
+public class PinsAndChecksTest {
+
+    private static final Piece WHITE_KING = Piece.of(KING, Colour.WHITE);
+    private static final Piece WHITE_ROOK = Piece.of(ROOK, Colour.WHITE);
+    private static final Piece WHITE_BISHOP = Piece.of(BISHOP, Colour.WHITE);
+    private static final Piece WHITE_PAWN = Piece.of(PAWN, Colour.WHITE);
+
+    private final ChessRules rules = new DefaultChessRules();
+
+    @Test
+    public void pinnedBishopCannotMove() {
+        Position position = new Position("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertEquals(4, moves.size());
+        for (Move move : moves) {
+            assertEquals(WHITE_KING, move.getPiece());
+        }
+    }
+
+    @Test
+    public void pinnedRookMovesAlongThePin() {
+        Position position = new Position("4k3/4r3/8/8/8/8/4R3/4K3 w - - 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertEquals(9, moves.size());
+        assertTrue(moves.contains(new Move(WHITE_ROOK, e2, e7, true)));
+        assertFalse(moves.contains(new Move(WHITE_ROOK, e2, d2)));
+    }
+
+    @Test
+    public void enPassantWhichExposesTheKing() {
+        // both pawns leave the 5th rank, the rook would attack the king
+        Position position = new Position("8/8/8/K2pP2r/8/8/8/7k w - d6 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertFalse(moves.contains(new Move(WHITE_PAWN, e5, d6, true)));
+        assertTrue(moves.contains(new Move(WHITE_PAWN, e5, e6)));
+    }
+
+    @Test
+    public void checkBlockedOrKingMoves() {
+        Position position = new Position("4k3/8/8/8/8/8/4B3/4K2r w - - 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertEquals(3, moves.size());
+        assertTrue(moves.contains(new Move(WHITE_BISHOP, e2, f1)));
+        assertTrue(moves.contains(new Move(WHITE_KING, e1, d2)));
+        assertTrue(moves.contains(new Move(WHITE_KING, e1, f2)));
+    }
+
+    @Test
+    public void doubleCheckOnlyKingMoves() {
+        // rook and knight give check, capturing the rook does not help
+        Position position = new Position("4k3/R7/8/8/8/5n2/8/r3K3 w - - 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertEquals(2, moves.size());
+        assertTrue(moves.contains(new Move(WHITE_KING, e1, e2)));
+        assertTrue(moves.contains(new Move(WHITE_KING, e1, f2)));
+        assertFalse(moves.contains(new Move(WHITE_ROOK, a7, a1, true)));
+    }
+
+    @Test
+    public void enPassantCapturesTheCheckingPawn() {
+        // d7-d5 gives check, the pawn on d5 can only be removed en passant
+        Position position = new Position("4k3/8/8/3pP3/4K3/8/8/8 w - d6 0 1");
+        Collection<Move> moves = rules.getLegalMoves(position);
+
+        assertTrue(moves.contains(new Move(WHITE_PAWN, e5, d6, true)));
+        assertFalse(moves.contains(new Move(WHITE_PAWN, e5, e6)));
+        assertTrue(rules.isCheck(position, Colour.WHITE));
+    }
+
+    /**
+     * Each move legal in one of the positions is tested in all others, e.g. as a hash or killer move.
+     */
+    @Test
+    public void isLegalAgreesWithMoveGeneration() {
+        List<MutablePosition> boards = new ArrayList<MutablePosition>();
+        Set<Integer> allMoves = new HashSet<Integer>();
+        for (Perft.ReferencePosition reference : Perft.REFERENCE_POSITIONS) {
+            MutablePosition board = new MutablePosition(new Position(reference.getFen()));
+            MoveList moves = new MoveList();
+            rules.getLegalMoves(board, moves);
+            boards.add(board);
+            for (int i = 0; i < moves.size(); ++i) {
+                board.makeMove(moves.get(i));
+                boards.add(new MutablePosition(board.toPosition()));
+                board.unmakeMove();
+            }
+        }
+        for (MutablePosition board : boards) {
+            MoveList moves = new MoveList();
+            rules.getLegalMoves(board, moves);
+            for (int i = 0; i < moves.size(); ++i) {
+                allMoves.add(moves.get(i));
+            }
+        }
+
+        for (MutablePosition board : boards) {
+            MoveList moves = new MoveList();
+            rules.getLegalMoves(board, moves);
+            Set<Integer> legal = new HashSet<Integer>();
+            for (int i = 0; i < moves.size(); ++i) {
+                legal.add(moves.get(i));
+            }
+            for (int move : allMoves) {
+                assertEquals(board + " " + move, legal.contains(move), rules.isLegal(board, move));
+            }
+        }
+    }
+}
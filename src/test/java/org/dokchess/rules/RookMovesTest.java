@@ -29,7 +29,7 @@ import static org.dokchess.domain.Squares.*;
 
 public class RookMovesTest {
 
-    private static final Piece TURM_WEISS = new Piece(PieceType.ROOK,
+    private static final Piece TURM_WEISS = Piece.of(PieceType.ROOK,
             Colour.WHITE);
 
     @Test
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Square;
+import org.junit.Test;
+
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.assertEquals;
+
+public class SlidingAttacksTest {
+
+    @Test
+    public void rookOnEmptyBoard() {
+        assertEquals(bits(b1, c1, d1, e1, f1, g1, h1, a2, a3, a4, a5, a6, a7, a8),
+                SlidingAttacks.rook(a1.getIndex(), 0L));
+    }
+
+    @Test
+    public void rookBlockedByPieces() {
+        long occupied = bits(d4, d6, b4, g4, d1);
+        assertEquals(bits(d5, d6, c4, b4, e4, f4, g4, d3, d2, d1),
+                SlidingAttacks.rook(d4.getIndex(), occupied));
+    }
+
+    @Test
+    public void bishopBlockedByPieces() {
+        long occupied = bits(d4, c3, f6, b6, g1);
+        assertEquals(bits(c5, b6, e5, f6, c3, e3, f2, g1),
+                SlidingAttacks.bishop(d4.getIndex(), occupied));
+    }
+
+    @Test
+    public void queenCombinesRookAndBishop() {
+        long occupied = bits(e4, e7, c6, h4, b1);
+        assertEquals(SlidingAttacks.rook(e4.getIndex(), occupied) | SlidingAttacks.bishop(e4.getIndex(), occupied),
+                SlidingAttacks.queen(e4.getIndex(), occupied));
+        assertEquals(bits(e5, e6, e7, d5, c6, f5, g6, h7, f4, g4, h4, d4, c4, b4, a4,
+                e3, e2, e1, d3, c2, b1, f3, g2, h1),
+                SlidingAttacks.queen(e4.getIndex(), occupied));
+    }
+
+    private static long bits(Square... squares) {
+        long result = 0;
+        for (Square square : squares) {
+            result |= 1L << square.getIndex();
+        }
+        return result;
+    }
+}
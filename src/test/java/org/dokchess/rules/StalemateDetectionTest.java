@@ -65,4 +65,28 @@ public class StalemateDetectionTest {
         Assert.assertTrue("simple stalemate",
                 chessRules.isStalemate(position));
     }
+
+    /**
+     * {@link ChessRules#hasLegalMove(Position)} agrees with the list of legal moves, also with pinned pieces
+     * and in (double) check.
+     */
+    @Test
+    public void hasLegalMove() {
+        String[] fens = {
+                "7k/8/7K/8/8/8/8/6Q1 b - - 0 1",
+                "r1bqkb1r/pppp1Qpp/2n2n2/4p3/2B1P3/8/PPPP1PPP/RNB1K1NR b KQkq - 0 1",
+                "1k6/1r6/8/8/8/8/8/1R4QK b - - 0 1",
+                "kr6/1r6/8/8/8/8/8/1Q5K b - - 0 1",
+                "4k3/R7/8/8/8/5n2/8/r3K3 w - - 0 1",
+                "8/8/8/8/8/8/5k2/5bqK w - - 0 1"
+        };
+        for (String fen : fens) {
+            Position position = new Position(fen);
+            Assert.assertEquals(fen, !chessRules.getLegalMoves(position).isEmpty(),
+                    chessRules.hasLegalMove(position));
+        }
+        for (Perft.ReferencePosition reference : Perft.REFERENCE_POSITIONS) {
+            Assert.assertTrue(chessRules.hasLegalMove(new Position(reference.getFen())));
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.Move;
+import org.dokchess.domain.Piece;
+import org.dokchess.domain.Position;
+import org.junit.Test;
+
+import static org.dokchess.domain.PieceType.*;
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.assertEquals;
+
+public class StaticExchangeTest {
+
+    private static final Piece WHITE_PAWN = Piece.of(PAWN, Colour.WHITE);
+    private static final Piece WHITE_ROOK = Piece.of(ROOK, Colour.WHITE);
+    private static final Piece WHITE_QUEEN = Piece.of(QUEEN, Colour.WHITE);
+    private static final Piece WHITE_KNIGHT = Piece.of(KNIGHT, Colour.WHITE);
+
+    @Test
+    public void unprotectedPiece() {
+        Position position = new Position("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+        assertEquals(3, StaticExchange.see(position, new Move(WHITE_ROOK, d1, d5, true)));
+    }
+
+    @Test
+    public void pawnTakesProtectedKnight() {
+        Position position = new Position("4k3/8/2p5/3n4/4P3/8/8/4K3 w - - 0 1");
+        assertEquals(2, StaticExchange.see(position, new Move(WHITE_PAWN, e4, d5, true)));
+    }
+
+    @Test
+    public void queenTakesProtectedPawn() {
+        Position position = new Position("4k3/8/2p5/3p4/8/8/8/3QK3 w - - 0 1");
+        assertEquals(-8, StaticExchange.see(position, new Move(WHITE_QUEEN, d1, d5, true)));
+    }
+
+    /**
+     * The rook on d1 backs up the rook on d2 (x-ray), so the pawn on d5 can be won.
+     */
+    @Test
+    public void xrayAttackerBehindRook() {
+        Position position = new Position("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1");
+        assertEquals(1, StaticExchange.see(position, new Move(WHITE_ROOK, d2, d5, true)));
+
+        // without the second rook, the exchange loses the rook for a pawn
+        position = new Position("3rk3/8/8/3p4/8/8/3R4/4K3 w - - 0 1");
+        assertEquals(-4, StaticExchange.see(position, new Move(WHITE_ROOK, d2, d5, true)));
+    }
+
+    @Test
+    public void quietMoveToAttackedSquare() {
+        // the pawn on c5 attacks d4
+        Position position = new Position("4k3/8/8/2p5/8/8/4N3/4K3 w - - 0 1");
+        assertEquals(0, StaticExchange.see(position, new Move(WHITE_KNIGHT, e2, f4)));
+        assertEquals(-3, StaticExchange.see(position, new Move(WHITE_KNIGHT, e2, d4)));
+    }
+}
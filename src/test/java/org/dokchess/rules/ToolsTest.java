@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2010-2016 Stefan Zoerner
+ * This file is part of DokChess.
+ *
+ * DokChess is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DokChess is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DokChess.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dokchess.rules;
+
+import org.dokchess.domain.Colour;
+import org.dokchess.domain.MutablePosition;
+import org.dokchess.domain.Position;
+import org.dokchess.domain.Square;
+import org.junit.Test;
+
+import static org.dokchess.domain.Squares.*;
+import static org.junit.Assert.*;
+
+public class ToolsTest {
+
+    /**
+     * All kinds of pieces attack e5; the rook on e1 is blocked by the pawn on e4.
+     */
+    private static final Position POSITION = new Position("4k3/3p2b1/2N5/4r3/3PP3/8/8/Q3R1K1 w - - 0 1");
+
+    @Test
+    public void attackersOfBothColours() {
+        assertEquals(bits(c6, d4), Tools.attackersTo(POSITION, e5, Colour.WHITE));
+        assertEquals(bits(g7), Tools.attackersTo(POSITION, e5, Colour.BLACK));
+        assertEquals(bits(a1, c6), Tools.attackersTo(POSITION, d4, Colour.WHITE));
+        assertEquals(0, Tools.attackersTo(POSITION, d4, Colour.BLACK));
+    }
+
+    @Test
+    public void attackersAgreeWithIsSquareAttacked() {
+        MutablePosition board = new MutablePosition(POSITION);
+        for (int square = 0; square < 64; ++square) {
+            for (Colour colour : Colour.values()) {
+                assertEquals(Tools.isSquareAttacked(board, square, colour),
+                        Tools.attackersTo(board, square, colour) != 0);
+                assertEquals(Tools.attackersTo(board, square, colour),
+                        Tools.attackersTo(POSITION, Square.of(square), colour));
+            }
+        }
+    }
+
+    private static long bits(Square... squares) {
+        long result = 0;
+        for (Square square : squares) {
+            result |= 1L << square.getIndex();
+        }
+        return result;
+    }
+}
@@ -24,9 +24,9 @@ import static org.junit.Assert.*;
 
 public class MoveParserTest {
 
-    private static final Piece WEISSER_KOENIG = new Piece(PieceType.KING,
+    private static final Piece WEISSER_KOENIG = Piece.of(PieceType.KING,
             Colour.WHITE);
-    private static final Piece WEISSER_BAUER = new Piece(PieceType.PAWN,
+    private static final Piece WEISSER_BAUER = Piece.of(PieceType.PAWN,
             Colour.WHITE);
 
     @Test
@@ -102,7 +102,7 @@ public class XBoardTest {
     @Test
     public void gueltigerZug() {
 
-        Piece weisserBauer = new Piece(PieceType.PAWN, Colour.WHITE);
+        Piece weisserBauer = Piece.of(PieceType.PAWN, Colour.WHITE);
         Move e2e4 = new Move(weisserBauer, Squares.e2, Squares.e4);
         Move e7e5 = new Move(weisserBauer, Squares.e7, Squares.e5);
 